@@ -9,6 +9,17 @@
 
 # Add any project specific keep options here:
 
+# TitleView is only referenced from list_item.xml, and is inflated through its (Context,
+# AttributeSet) constructor.
+-keep public class com.example.android.newsapp.TitleView {
+    public <init>(android.content.Context, android.util.AttributeSet);
+}
+
+# The metrics are printed by NewsActivity.dump(), which is only called by "adb shell dumpsys".
+-keepclassmembers class com.example.android.newsapp.NewsActivity {
+    public void dump(java.lang.String, java.io.FileDescriptor, java.io.PrintWriter, java.lang.String[]);
+}
+
 # If your project uses WebView with JS, uncomment the following
 # and specify the fully qualified class name to the JavaScript interface
 # class:
@@ -18,38 +18,42 @@ package com.example.android.newsapp;
 import android.content.AsyncTaskLoader;
 import android.content.Context;
 
-import java.util.List;
-
 /**
- * Loads a list of news by using an AsyncTask to perform the network request to the given URL.
+ * Loads the body of a news from the {@link ArticleStore}, so the disk is never read on the UI
+ * thread.
  */
-class NewsLoader extends AsyncTaskLoader<List<News>> {
-    private String url;    // Query URL.
+class ArticleLoader extends AsyncTaskLoader<String> {
+    private final String url;   // URL of the news.
+    private String body;        // Body of the news, once loaded.
 
     /**
-     * Constructs a new {@link NewsLoader}.
+     * Constructs a new {@link ArticleLoader}.
      *
      * @param context of the activity.
-     * @param url     to load data from.
+     * @param url     is the URL of the news.
      */
-    NewsLoader(Context context, String url) {
+    ArticleLoader(Context context, String url) {
         super(context);
         this.url = url;
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (body != null) deliverResult(body);
+        else forceLoad();
+    }
+
+    @Override
+    public void deliverResult(String data) {
+        body = data;
+        super.deliverResult(data);
     }
 
     /**
      * This is on a background thread.
      */
     @Override
-    public List<News> loadInBackground() {
-        if (url == null) return null;
-
-        // Perform the network request, parse the response, and extract a list of news.
-        return QueryUtils.fetchNewsData(url);
+    public String loadInBackground() {
+        return ArticleStore.getInstance(getContext()).get(url);
     }
 }
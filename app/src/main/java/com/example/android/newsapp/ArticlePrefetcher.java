@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.util.Log;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Downloads ahead of time the bodies of the top news of the list, while the device is idle and on
+ * an unmetered connection, so they can be read in the app later, even offline. Bodies are kept in
+ * the {@link ArticleStore}, and every prefetch only requests the news whose body is not stored
+ * yet, all in a single request.
+ * <p>
+ * The user can turn prefetching off, as it downloads articles that may never be read.
+ */
+class ArticlePrefetcher {
+    private static final String LOG_TAG = ArticlePrefetcher.class.getSimpleName();
+
+    // Name of the preferences file, and key of whether prefetching is enabled.
+    private static final String PREFERENCES_NAME = "articles";
+    private static final String KEY_ENABLED = "prefetch_enabled";
+
+    // Maximum number of bodies downloaded by a single prefetch, from the top of the list.
+    static final int MAX_ARTICLES = 10;
+
+    private static ArticlePrefetcher instance;
+
+    private final ArticleStore store;               // Where the bodies are kept.
+    private final SharedPreferences preferences;    // Where the enabled flag is kept.
+
+    // Thread of the prefetch in progress, or null. Only one prefetch runs at a time.
+    private Thread thread;
+
+    /**
+     * Constructs a new {@link ArticlePrefetcher}.
+     *
+     * @param context of the app.
+     */
+    private ArticlePrefetcher(Context context) {
+        store = ArticleStore.getInstance(context);
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the prefetcher shared by the whole app.
+     *
+     * @param context of the app.
+     * @return the shared {@link ArticlePrefetcher}.
+     */
+    static synchronized ArticlePrefetcher getInstance(Context context) {
+        if (instance == null) instance = new ArticlePrefetcher(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * Checks whether prefetching is enabled, as it is unless the user turned it off.
+     */
+    boolean isEnabled() {
+        return preferences.getBoolean(KEY_ENABLED, true);
+    }
+
+    /**
+     * Turns prefetching on or off. Turning it off stops any prefetch in progress, but the bodies
+     * already stored can still be read.
+     *
+     * @param enabled is whether prefetching is enabled.
+     */
+    void setEnabled(boolean enabled) {
+        preferences.edit().putBoolean(KEY_ENABLED, enabled).apply();
+        if (!enabled) cancel();
+    }
+
+    /**
+     * Starts prefetching, on a background thread, the bodies of the first news of the given list
+     * that are not stored yet. Nothing is done if prefetching is disabled, if every body is
+     * already stored, or if a prefetch is already in progress.
+     *
+     * @param news is the list of news, in the order they are shown.
+     */
+    synchronized void prefetch(List<News> news) {
+        if (!isEnabled() || (thread != null && thread.isAlive())) return;
+        final String requestUrl = buildRequestUrl(news);
+        if (requestUrl == null) return;
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // Prefetching must never compete with the UI thread for the CPU.
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                fetch(requestUrl);
+            }
+        }, LOG_TAG);
+        thread.start();
+    }
+
+    /**
+     * Prefetches on the calling thread, for callers that already run in the background, such as
+     * the sync job.
+     *
+     * @param news is the list of news, in the order they are shown.
+     */
+    void prefetchNow(List<News> news) {
+        if (!isEnabled()) return;
+        String requestUrl = buildRequestUrl(news);
+        if (requestUrl != null) fetch(requestUrl);
+    }
+
+    /**
+     * Stops the prefetch in progress, if any. Bodies already downloaded are kept.
+     */
+    synchronized void cancel() {
+        if (thread != null) thread.interrupt();
+        thread = null;
+    }
+
+    /**
+     * Builds the request for the bodies of the first news of the list that are not stored yet.
+     *
+     * @param news is the list of news, in the order they are shown.
+     * @return the URL of the request, or null if there is nothing to prefetch.
+     */
+    private String buildRequestUrl(List<News> news) {
+        List<String> ids = new ArrayList<>(MAX_ARTICLES);
+        for (int i = 0; i < news.size() && ids.size() < MAX_ARTICLES; i++) {
+            String url = news.get(i).getUrl();
+            if (store.contains(url)) continue;
+            String id = contentId(url);
+            if (id != null) ids.add(id);
+        }
+        if (ids.isEmpty()) return null;
+
+        return new NewsQuery.Builder()
+                .ids(ids)
+                .showFields("bodyText")
+                .pageSize(ids.size())
+                .build()
+                .toUrl();
+    }
+
+    /**
+     * Downloads the bodies and stores them.
+     *
+     * @param requestUrl is the URL of the request for the bodies.
+     */
+    private void fetch(String requestUrl) {
+        Map<String, String> bodies = QueryUtils.fetchArticleBodies(requestUrl);
+        if (bodies == null) return;
+        for (Map.Entry<String, String> body : bodies.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) return;
+            store.put(body.getKey(), body.getValue());
+            Metrics.articlesPrefetched.incrementAndGet();
+        }
+        Log.i(LOG_TAG, "Prefetched " + bodies.size() + " articles");
+    }
+
+    /**
+     * Returns the id of a news in the API, which is the path of its URL on the Guardian website,
+     * as "world/2017/jul/01/title".
+     *
+     * @param url is the URL of the news.
+     * @return the id of the news, or null if the URL is not valid.
+     */
+    static String contentId(String url) {
+        try {
+            String path = new URI(url).getPath();
+            if (path == null || path.length() <= 1) return null;
+            return path.substring(1);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
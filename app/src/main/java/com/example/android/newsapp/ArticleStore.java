@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Disk store of the bodies of the news, prefetched for reading them in the app, even offline.
+ * Every body lives in its own file, compressed with Deflate, and the least recently used files are
+ * evicted when the total size of the store exceeds its limit.
+ */
+class ArticleStore {
+    private static final String LOG_TAG = ArticleStore.class.getSimpleName();
+
+    // Name of the directory, inside the app files directory, where bodies are stored.
+    private static final String DIRECTORY = "articles";
+
+    // Default maximum size of the store on disk: 5 MB, several hundreds of compressed bodies.
+    static final long DEFAULT_MAX_BYTES = 5 * 1024 * 1024;
+
+    // Version of the file format. Files written with any other version are ignored.
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Maximum factor by which Deflate can compress data, which bounds the length of a body read
+    // from a file of a given size.
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private static ArticleStore instance;
+
+    private final File directory;   // Directory where the bodies are stored.
+    private final long maxBytes;    // Maximum size of all the files together.
+
+    /**
+     * Constructs a new {@link ArticleStore}.
+     *
+     * @param directory is the directory where the bodies are stored.
+     * @param maxBytes  is the maximum size, in bytes, of the store on disk.
+     */
+    ArticleStore(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the store shared by the whole app, with the default size.
+     *
+     * @param context of the app.
+     * @return the shared {@link ArticleStore}.
+     */
+    static synchronized ArticleStore getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+            instance = new ArticleStore(directory, DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether the body of a news is stored, without reading it.
+     *
+     * @param url is the URL of the news.
+     * @return true if the body is stored.
+     */
+    boolean contains(String url) {
+        return fileFor(url).exists();
+    }
+
+    /**
+     * Reads the body of a news.
+     *
+     * @param url is the URL of the news.
+     * @return the body of the news, or null if it is not stored.
+     */
+    synchronized String get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(url)) return null;
+            // A body has at most as many chars as its UTF-8 bytes, so a longer length is corrupt,
+            // and must not be used for allocating the body.
+            int length = in.readInt();
+            if (length < 0 || length > file.length() * MAX_DEFLATE_RATIO)
+                throw new IOException("Length out of range: " + length);
+            Reader reader = new InputStreamReader(new InflaterInputStream(in), UTF_8);
+            char[] body = new char[length];
+            int read = 0;
+            int count;
+            while (read < length && (count = reader.read(body, read, length - read)) != -1) read += count;
+            if (read < length) throw new IOException("Truncated article");
+
+            // Mark the file as recently used, so it is the last one to be evicted.
+            file.setLastModified(System.currentTimeMillis());
+            return new String(body);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the stored article.", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the body of a news, replacing any previous one, and evicts old bodies if the store has
+     * grown beyond its size limit.
+     *
+     * @param url  is the URL of the news.
+     * @param body is the body of the news.
+     */
+    synchronized void put(String url, String body) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Unable to create the article directory " + directory);
+            return;
+        }
+
+        // Write to a temporary file first, so a failure never leaves a half-written body.
+        File file = fileFor(url);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(url);
+            out.writeInt(body.length());
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                Writer writer = new OutputStreamWriter(new DeflaterOutputStream(out, deflater), UTF_8);
+                writer.write(body);
+                writer.close();
+            } finally {
+                deflater.end();
+            }
+            out = null;
+            if (!tmp.renameTo(file)) Log.e(LOG_TAG, "Unable to store the article.");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the article.", e);
+        } finally {
+            closeQuietly(out);
+            if (tmp.exists()) tmp.delete();
+        }
+
+        NewsCache.trimToSize(directory, maxBytes);
+    }
+
+    /**
+     * Returns the file where the body of the given news is stored, named after a hash of its URL.
+     */
+    private File fileFor(String url) {
+        return new File(directory, NewsCache.fileNameFor(url));
+    }
+
+    /**
+     * Closes the given stream, ignoring any exception.
+     *
+     * @param closeable is the stream to be closed, or null.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing else can be done here.
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker in front of the news API. After several consecutive transient failures, the
+ * circuit opens and requests fail right away, without reaching the network, for a while. Then a
+ * single request is let through as a probe: if it succeeds the circuit closes again, and if it
+ * fails the circuit stays open for another while.
+ * <p>
+ * A rate-limited response opens the circuit at once, for as long as its "Retry-After" asks, so no
+ * caller keeps hitting the API meanwhile.
+ */
+class CircuitBreaker {
+    /**
+     * States of the circuit.
+     */
+    enum State {
+        // Requests are performed.
+        CLOSED,
+        // Requests fail right away.
+        OPEN,
+        // A single request is let through, to find out whether the API is back.
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;     // Consecutive failures that open the circuit.
+    private final long openNanos;           // Minimum time the circuit stays open.
+
+    private State state = State.CLOSED;
+    private int failures;                   // Consecutive transient failures.
+    private long openUntil;                 // End of the open state, in System.nanoTime().
+    private long probeStartedAt;            // Start of the latest probe, in System.nanoTime().
+    private boolean probing;                // Whether a probe is in flight.
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold is the number of consecutive failures that open the circuit.
+     * @param openMillis       is the minimum time the circuit stays open, in milliseconds.
+     */
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Asks for permission to perform a request. Every permitted request must be followed by a call
+     * to {@link #onSuccess()} or {@link #onFailure(NewsFetchException)}. A probe that never reports
+     * back, e.g. because it was cancelled, is replaced by a new one once the open time has passed.
+     *
+     * @throws NewsFetchException of kind CIRCUIT_OPEN if the request must not be performed.
+     */
+    synchronized void acquire() throws NewsFetchException {
+        long now = System.nanoTime();
+        if (state == State.OPEN && now - openUntil >= 0) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN && (!probing || now - probeStartedAt >= openNanos)) {
+            probing = true;
+            probeStartedAt = now;
+            return;
+        }
+        if (state == State.CLOSED) return;
+
+        long remainingMillis = state == State.OPEN
+                ? TimeUnit.NANOSECONDS.toMillis(openUntil - now)
+                : TimeUnit.NANOSECONDS.toMillis(probeStartedAt + openNanos - now);
+        throw new NewsFetchException(NewsFetchException.Kind.CIRCUIT_OPEN,
+                "The news API is failing, requests are paused", 0, Math.max(0, remainingMillis), null);
+    }
+
+    /**
+     * Reports that a permitted request succeeded, closing the circuit.
+     */
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Reports that a permitted request failed. Only transient failures count, since a wrong
+     * request says nothing about the health of the API.
+     *
+     * @param failure is the failure of the request.
+     */
+    synchronized void onFailure(NewsFetchException failure) {
+        if (!failure.isTransient()) {
+            // The API did answer, so it is up.
+            if (state == State.HALF_OPEN) onSuccess();
+            return;
+        }
+        failures++;
+        long retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(failure.retryAfterMillis);
+        long openFor;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            openFor = Math.max(openNanos, retryAfterNanos);
+        } else if (failure.retryAfterMillis != NewsFetchException.NO_RETRY_AFTER) {
+            // The server said when to come back: a retry at that time is the probe.
+            openFor = retryAfterNanos;
+        } else {
+            return;
+        }
+
+        // Never shorten an open state that is already longer.
+        long until = System.nanoTime() + openFor;
+        if (state != State.OPEN || until - openUntil > 0) openUntil = until;
+        state = State.OPEN;
+        probing = false;
+    }
+}
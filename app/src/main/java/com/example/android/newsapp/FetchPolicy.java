@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How much the app fetches for the current network: the number of news per page, whether
+ * thumbnails are requested and at which size, and how far ahead of the user the next page is
+ * requested. It is chosen from the type of connection, whether it is metered, and the throughput
+ * measured on the latest responses, so slow links get small and light pages while Wi-Fi gets
+ * large ones.
+ */
+final class FetchPolicy {
+    /**
+     * Type of the active network connection.
+     */
+    enum Connection {
+        NONE, WIFI, ETHERNET, CELLULAR,
+        // 2G cellular networks, such as GPRS or EDGE.
+        SLOW_CELLULAR,
+        OTHER
+    }
+
+    /**
+     * Size of the thumbnails shown in the list.
+     */
+    enum ThumbnailQuality {
+        // The thumbnail given by the API, 500 pixels wide.
+        FULL,
+        // The smallest rendition of the same image, 140 pixels wide.
+        LOW,
+        // No thumbnails are requested. Those already cached are still shown.
+        NONE
+    }
+
+    // Policies, from the most to the least generous.
+    static final FetchPolicy GENEROUS = new FetchPolicy("generous", 50, ThumbnailQuality.FULL, 15);
+    static final FetchPolicy STANDARD = new FetchPolicy("standard", 20, ThumbnailQuality.FULL, 8);
+    static final FetchPolicy LIGHT = new FetchPolicy("light", 10, ThumbnailQuality.LOW, 4);
+    static final FetchPolicy MINIMAL = new FetchPolicy("minimal", 10, ThumbnailQuality.NONE, 2);
+    private static final FetchPolicy[] ALL = {GENEROUS, STANDARD, LIGHT, MINIMAL};
+
+    // Measured throughput, in bytes per second, below which pages are light or minimal, and above
+    // which an unmetered connection gets the generous pages.
+    private static final long LIGHT_BELOW_BYTES_PER_SECOND = 128 * 1024;
+    private static final long MINIMAL_BELOW_BYTES_PER_SECOND = 32 * 1024;
+    private static final long GENEROUS_ABOVE_BYTES_PER_SECOND = 512 * 1024;
+
+    // Width at the end of the URLs of Guardian images, as in ".../0_0_3000_1800/500.jpg".
+    private static final Pattern IMAGE_WIDTH = Pattern.compile("^(https?://media\\.guim\\.co\\.uk/.+/)\\d+(\\.jpg)$");
+    private static final int LOW_QUALITY_WIDTH = 140;
+
+    final String name;                      // Name of the policy, for logs and persistence.
+    final int pageSize;                     // Number of news per page.
+    final ThumbnailQuality thumbnails;      // Size of the thumbnails.
+
+    // The next page is requested when there are less than this number of news below the last
+    // visible one.
+    final int prefetchDistance;
+
+    private FetchPolicy(String name, int pageSize, ThumbnailQuality thumbnails, int prefetchDistance) {
+        this.name = name;
+        this.pageSize = pageSize;
+        this.thumbnails = thumbnails;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * Chooses the policy for a network connection.
+     *
+     * @param connection     is the type of the connection. It must not be NONE.
+     * @param metered        is whether the connection is metered.
+     * @param bytesPerSecond is the throughput measured on the latest responses, or
+     *                       {@link Throughput#UNKNOWN}.
+     * @return the policy for the connection.
+     */
+    static FetchPolicy forConnection(Connection connection, boolean metered, long bytesPerSecond) {
+        // A measured throughput tells more than the type of connection.
+        boolean measured = bytesPerSecond != Throughput.UNKNOWN;
+        if (measured && bytesPerSecond < MINIMAL_BELOW_BYTES_PER_SECOND) return MINIMAL;
+        if (measured && bytesPerSecond < LIGHT_BELOW_BYTES_PER_SECOND) return LIGHT;
+        if (!measured && connection == Connection.SLOW_CELLULAR) return LIGHT;
+        if (metered) return STANDARD;
+        return !measured || bytesPerSecond >= GENEROUS_ABOVE_BYTES_PER_SECOND ? GENEROUS : STANDARD;
+    }
+
+    /**
+     * Returns the policy with the given name.
+     *
+     * @param name is the name of a policy.
+     * @return the policy, or null if there is none with that name.
+     */
+    static FetchPolicy forName(String name) {
+        for (FetchPolicy policy : ALL) {
+            if (policy.name.equals(name)) return policy;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the optional fields requested with every news.
+     */
+    String[] showFields() {
+        return thumbnails == ThumbnailQuality.NONE ? new String[0] : new String[]{"thumbnail"};
+    }
+
+    /**
+     * Returns the URL of the thumbnail to be downloaded for the given thumbnail of a news.
+     *
+     * @param url is the URL of the thumbnail given by the API.
+     * @return the URL of the thumbnail of the quality of this policy.
+     */
+    String thumbnailUrl(String url) {
+        if (thumbnails != ThumbnailQuality.LOW) return url;
+        Matcher matcher = IMAGE_WIDTH.matcher(url);
+        return matcher.matches() ? matcher.group(1) + LOW_QUALITY_WIDTH + matcher.group(2) : url;
+    }
+
+    @Override
+    public String toString() {
+        String quality = thumbnails == ThumbnailQuality.NONE ? "no" : thumbnails.name().toLowerCase(Locale.US);
+        return name + " (" + pageSize + " news per page, " + quality + " thumbnails)";
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, cheap enough to be updated on hot paths.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into 8 buckets, so any
+ * value is known with a relative error below 12.5%, whatever its magnitude, with a fixed amount of
+ * memory and without allocating anything when recording.
+ */
+class Histogram {
+    // Every power of two is split into 2^SUB_BUCKET_BITS buckets.
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Enough buckets for any non-negative long.
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;      // Name of the measured quantity.
+    private final String unit;      // Unit of the recorded values.
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructs a new {@link Histogram}.
+     *
+     * @param name is the name of the measured quantity.
+     * @param unit is the unit of the recorded values.
+     */
+    Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value is the value to be recorded.
+     */
+    void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) currentMax = max.get();
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, or 0 if there are no values.
+     */
+    double getMean() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : (double) sum.get() / currentCount;
+    }
+
+    /**
+     * Returns an approximation of the given percentile of the recorded values: the highest value
+     * of the bucket where the percentile falls, so it never underestimates a latency.
+     *
+     * @param percentile is the percentile, between 0 and 100.
+     * @return the approximate value, or 0 if there are no values.
+     */
+    long getPercentile(double percentile) {
+        long currentCount = count.get();
+        if (currentCount == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(currentCount * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return i + 1 < BUCKETS ? Math.min(lowestValueOf(i + 1) - 1, max.get()) : max.get();
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded concurrently may be partially lost.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Returns the bucket where the given value is counted. Values below SUB_BUCKETS have a bucket
+     * each; above that, the position of the highest bit selects the power of two, and the next
+     * SUB_BUCKET_BITS bits select the bucket within it.
+     *
+     * @param value is a non-negative value.
+     * @return the index of the bucket.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the lowest value counted in the given bucket.
+     *
+     * @param bucket is the index of the bucket.
+     * @return the lowest value of the bucket.
+     */
+    static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Transport layer used by {@link QueryUtils} for performing HTTP requests. Implementations decide
+ * how connections are opened, reused and timed out, and how response bodies are decoded.
+ */
+interface HttpTransport {
+    /**
+     * Performs a conditional GET request to the given URL.
+     *
+     * @param url          is the URL for the HTTP request.
+     * @param etag         is the entity tag of a previously received response, sent as
+     *                     "If-None-Match", or null.
+     * @param lastModified is the "Last-Modified" date of a previously received response, sent as
+     *                     "If-Modified-Since", or null.
+     * @return the {@link Response}, which must be closed once its body has been read.
+     * @throws IOException if the request could not be performed.
+     */
+    Response get(URL url, String etag, String lastModified) throws IOException;
+
+    /**
+     * An HTTP response whose body is read directly from the network. Closing it releases the
+     * underlying connection, so it can be reused for later requests to the same host.
+     */
+    abstract class Response implements Closeable {
+        final int code;             // HTTP status code.
+        final InputStream body;     // Decoded body of the response, or null.
+        final String etag;          // Value of the "ETag" header, or null.
+        final String lastModified;  // Value of the "Last-Modified" header, or null.
+        final String retryAfter;    // Value of the "Retry-After" header, or null.
+
+        /**
+         * Constructs a new {@link Response}.
+         *
+         * @param code         is the HTTP status code.
+         * @param body         is the decoded body of the response, or null.
+         * @param etag         is the value of the "ETag" header, or null.
+         * @param lastModified is the value of the "Last-Modified" header, or null.
+         * @param retryAfter   is the value of the "Retry-After" header, or null.
+         */
+        Response(int code, InputStream body, String etag, String lastModified, String retryAfter) {
+            this.code = code;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.retryAfter = retryAfter;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the hot paths of the app, kept as {@link Histogram}s and counters that are cheap to
+ * update, so they can stay enabled in production builds:
+ * <p>
+ * * Network: connection, including the DNS lookup, time to first byte, body read time and bytes
+ * read.
+ * * Parsing: parse time and number of news per response.
+ * * Startup: time from the creation of the main screen to its first frame, and to the first
+ * complete list of news, and time for reading the snapshot of the list after the process was
+ * killed.
+ * * UI: time for binding a row of the list, and title layouts found precomputed.
+ * * Caching: hits and misses of the disk cache and of the shared request layer, and retried
+ * requests.
+ * * Deduplication: news collapsed into a previous copy of the same story.
+ * <p>
+ * They are shown in a debug screen, and printed by {@link #dump(PrintWriter)}, which is reachable
+ * through "adb shell dumpsys activity com.example.android.newsapp/.NewsActivity".
+ */
+final class Metrics {
+    // Network timings, in microseconds, and size of the response bodies, in bytes as received.
+    static final Histogram connect = new Histogram("connect", "us");
+    static final Histogram timeToFirstByte = new Histogram("ttfb", "us");
+    static final Histogram bodyRead = new Histogram("body_read", "us");
+    static final Histogram bytesRead = new Histogram("bytes_read", "B");
+
+    // Parse time, in microseconds, and number of news per parsed response.
+    static final Histogram parse = new Histogram("parse", "us");
+    static final Histogram itemCount = new Histogram("item_count", "news");
+
+    // Time for binding a row of the list, in microseconds.
+    static final Histogram bind = new Histogram("bind", "us");
+
+    // Time from the creation of the main screen to its first frame, and to the first complete list
+    // of news, in microseconds.
+    static final Histogram firstDraw = new Histogram("first_draw", "us");
+    static final Histogram fullContent = new Histogram("full_content", "us");
+
+    // Time for reading the snapshot of the list when it is restored, in microseconds.
+    static final Histogram snapshotRead = new Histogram("snapshot", "us");
+
+    // Time for filtering and sorting the loaded news with {@link NewsIndex}, in microseconds.
+    static final Histogram filter = new Histogram("filter", "us");
+
+    // Every histogram, in the order they are dumped.
+    private static final Histogram[] histograms = {
+            connect, timeToFirstByte, bodyRead, bytesRead, parse, itemCount, bind,
+            firstDraw, fullContent, snapshotRead, filter};
+
+    // Pages read from the disk cache without any request, pages requested to the network and,
+    // among those, pages revalidated with a "304 Not Modified" response.
+    static final AtomicLong cacheHits = new AtomicLong();
+    static final AtomicLong cacheMisses = new AtomicLong();
+    static final AtomicLong cacheRevalidations = new AtomicLong();
+
+    // Requests served from memory or attached to a request in flight by {@link NewsRequests},
+    // and requests actually performed.
+    static final AtomicLong requestsShared = new AtomicLong();
+    static final AtomicLong requestsPerformed = new AtomicLong();
+
+    // Attempts repeated after a transient failure, by {@link QueryUtils}.
+    static final AtomicLong requestsRetried = new AtomicLong();
+
+    // Title layouts found ready when a row was measured, and laid out on the UI thread instead.
+    static final AtomicLong titleLayoutHits = new AtomicLong();
+    static final AtomicLong titleLayoutMisses = new AtomicLong();
+
+    // News left out of the pages loaded for repeating a previous news, by {@link NewsDedupIndex}.
+    // Lists merged or shown only until the page is loaded are not counted.
+    static final AtomicLong newsCollapsed = new AtomicLong();
+
+    // Article bodies stored by {@link ArticlePrefetcher}, and news opened in the reader, from the
+    // stored body, or in the browser, for lack of one.
+    static final AtomicLong articlesPrefetched = new AtomicLong();
+    static final AtomicLong articlesReadOffline = new AtomicLong();
+    static final AtomicLong articlesOpenedInBrowser = new AtomicLong();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Metrics} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name Metrics (and an object instance of Metrics is not needed).
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Returns the time elapsed since the given instant, in microseconds.
+     *
+     * @param startNanos is the instant, as returned by {@link System#nanoTime()}.
+     * @return the elapsed time in microseconds.
+     */
+    static long elapsedMicros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Prints every metric: count, mean, p50, p90, p99 and maximum of every histogram, and the
+     * counters along with the hit ratios.
+     *
+     * @param writer is where the metrics are printed.
+     */
+    static void dump(PrintWriter writer) {
+        writer.println(String.format(Locale.US, "%-12s %6s %10s %10s %10s %10s %10s",
+                "metric", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Histogram histogram : histograms) {
+            writer.println(String.format(Locale.US, "%-12s %6d %10.1f %10d %10d %10d %10d %s",
+                    histogram.getName(), histogram.getCount(), histogram.getMean(),
+                    histogram.getPercentile(50), histogram.getPercentile(90), histogram.getPercentile(99),
+                    histogram.getMax(), histogram.getUnit()));
+        }
+        writer.println();
+
+        long hits = cacheHits.get();
+        long misses = cacheMisses.get();
+        writer.println(String.format(Locale.US, "disk cache: %d hits, %d misses (%d revalidated), hit ratio %s",
+                hits, misses, cacheRevalidations.get(), ratio(hits, hits + misses)));
+        long shared = requestsShared.get();
+        long performed = requestsPerformed.get();
+        writer.println(String.format(Locale.US, "requests: %d shared, %d performed, shared ratio %s, %d retries",
+                shared, performed, ratio(shared, shared + performed), requestsRetried.get()));
+        long layoutHits = titleLayoutHits.get();
+        long layoutMisses = titleLayoutMisses.get();
+        writer.println(String.format(Locale.US, "title layouts: %d precomputed, %d on the UI thread, hit ratio %s",
+                layoutHits, layoutMisses, ratio(layoutHits, layoutHits + layoutMisses)));
+        writer.println(String.format(Locale.US, "deduplication: %d news collapsed", newsCollapsed.get()));
+        long readOffline = articlesReadOffline.get();
+        long openedInBrowser = articlesOpenedInBrowser.get();
+        writer.println(String.format(Locale.US, "articles: %d prefetched, %d read in the app, %d in the browser, reader ratio %s",
+                articlesPrefetched.get(), readOffline, openedInBrowser, ratio(readOffline, readOffline + openedInBrowser)));
+        writer.flush();
+    }
+
+    /**
+     * Forgets every recorded metric.
+     */
+    static void reset() {
+        for (Histogram histogram : histograms) histogram.reset();
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        cacheRevalidations.set(0);
+        requestsShared.set(0);
+        requestsPerformed.set(0);
+        requestsRetried.set(0);
+        titleLayoutHits.set(0);
+        titleLayoutMisses.set(0);
+        newsCollapsed.set(0);
+        articlesPrefetched.set(0);
+        articlesReadOffline.set(0);
+        articlesOpenedInBrowser.set(0);
+    }
+
+    /**
+     * Formats a ratio as a percentage.
+     *
+     * @param part  is the numerator.
+     * @param total is the denominator.
+     * @return the percentage, or "-" if the denominator is 0.
+     */
+    private static String ratio(long part, long total) {
+        return total == 0 ? "-" : String.format(Locale.US, "%.1f%%", 100.0 * part / total);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.telephony.TelephonyManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Follows the active network connection, and chooses the {@link FetchPolicy} for it. Listeners are
+ * told on the UI thread every time the connection changes, or the throughput measured on it calls
+ * for another policy, so the app adapts while it is running instead of checking the connection only
+ * when it starts.
+ * <p>
+ * The latest policy chosen while connected is remembered, also across restarts, so the app keeps
+ * requesting the same pages, and finds them in the cache, while it is offline.
+ */
+class NetworkMonitor {
+    // Name of the preferences file, and key of the latest policy chosen while connected.
+    private static final String PREFERENCES_NAME = "network";
+    private static final String KEY_LAST_POLICY = "last_policy";
+
+    /**
+     * Interface for receiving the changes of the connection.
+     */
+    interface Listener {
+        /**
+         * Called on the UI thread when the active connection, or the policy for it, changes.
+         *
+         * @param connected is whether there is a connection now.
+         * @param policy    is the policy for the new connection.
+         */
+        void onNetworkChanged(boolean connected, FetchPolicy policy);
+    }
+
+    private static NetworkMonitor instance;
+
+    private final ConnectivityManager connectivityManager;
+    private final SharedPreferences preferences;    // Where the latest policy is remembered.
+    private final Handler mainHandler;              // Handler for notifying the listeners.
+
+    // Listeners, and whether the callback for the changes of the networks has been registered.
+    // Only accessed on the UI thread.
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean registered;
+
+    // State of the active connection, as found by the latest update, and latest policy chosen while
+    // connected, which is only changed, and remembered, when the listeners are told.
+    private FetchPolicy.Connection connection;
+    private boolean metered;
+    private FetchPolicy lastPolicy;
+
+    // Checks the connection and the policy for it on the UI thread, and notifies the listeners if
+    // either has changed.
+    private final Runnable updateConnection = new Runnable() {
+        @Override
+        public void run() {
+            boolean connectionChanged = update();
+            boolean policyChanged = choosePolicy();
+            if (!connectionChanged && !policyChanged) return;
+            boolean connected = isConnected();
+            FetchPolicy policy = getPolicy();
+            for (Listener listener : new ArrayList<>(listeners)) listener.onNetworkChanged(connected, policy);
+        }
+    };
+
+    // Checks the policy again when the throughput measured calls for another one. This is on the
+    // thread that read the response, so the check itself is posted to the UI thread.
+    private final Throughput.Listener throughputListener = new Throughput.Listener() {
+        @Override
+        public void onThroughputChanged(long bytesPerSecond) {
+            if (isPolicyOutdated(bytesPerSecond)) mainHandler.post(updateConnection);
+        }
+    };
+
+    // Callback for the changes of every network with Internet access. The active connection is
+    // checked again after any of them, as any may have become, or stopped being, the active one.
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            mainHandler.post(updateConnection);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            mainHandler.post(updateConnection);
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+            mainHandler.post(updateConnection);
+        }
+    };
+
+    /**
+     * Constructs a new {@link NetworkMonitor}.
+     *
+     * @param context of the app.
+     */
+    private NetworkMonitor(Context context) {
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mainHandler = new Handler(Looper.getMainLooper());
+        FetchPolicy savedPolicy = FetchPolicy.forName(preferences.getString(KEY_LAST_POLICY, ""));
+        lastPolicy = savedPolicy != null ? savedPolicy : FetchPolicy.STANDARD;
+        update();
+        Throughput.setListener(throughputListener);
+    }
+
+    /**
+     * Returns the monitor shared by the whole app.
+     *
+     * @param context of the app.
+     * @return the shared {@link NetworkMonitor}.
+     */
+    static synchronized NetworkMonitor getInstance(Context context) {
+        if (instance == null) instance = new NetworkMonitor(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * Adds a listener of the changes of the connection. The changes are only followed from the
+     * first listener on. Must be called on the UI thread.
+     *
+     * @param listener is the listener to be added.
+     */
+    void addListener(Listener listener) {
+        listeners.add(listener);
+        if (registered) return;
+        registered = true;
+        connectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build(), networkCallback);
+
+        // The connection may have changed since it was last checked.
+        mainHandler.post(updateConnection);
+    }
+
+    /**
+     * Removes a listener. Must be called on the UI thread.
+     *
+     * @param listener is the listener to be removed.
+     */
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Checks whether there is a network connection.
+     *
+     * @return true if there is network connection, false otherwise.
+     */
+    synchronized boolean isConnected() {
+        return connection != FetchPolicy.Connection.NONE;
+    }
+
+    /**
+     * Checks whether there is a network connection that is not metered, so data can be downloaded
+     * ahead of time without costing the user anything.
+     *
+     * @return true if there is an unmetered connection, false otherwise.
+     */
+    synchronized boolean isUnmetered() {
+        return connection != FetchPolicy.Connection.NONE && !metered;
+    }
+
+    /**
+     * Returns the policy for the current connection, from its type and the throughput measured
+     * on it. Without connection, the latest policy chosen is kept.
+     *
+     * @return the policy for the current connection.
+     */
+    synchronized FetchPolicy getPolicy() {
+        if (connection == FetchPolicy.Connection.NONE) return lastPolicy;
+        return FetchPolicy.forConnection(connection, metered, Throughput.getBytesPerSecond());
+    }
+
+    /**
+     * Returns the latest policy chosen while connected, even in a previous run of the app, without
+     * checking the current connection.
+     */
+    synchronized FetchPolicy getLastPolicy() {
+        return lastPolicy;
+    }
+
+    /**
+     * Checks whether the given throughput calls for another policy than the latest one chosen.
+     *
+     * @param bytesPerSecond is the throughput measured, in bytes per second.
+     * @return true if the policy has to be chosen again.
+     */
+    private synchronized boolean isPolicyOutdated(long bytesPerSecond) {
+        return connection != FetchPolicy.Connection.NONE
+                && FetchPolicy.forConnection(connection, metered, bytesPerSecond) != lastPolicy;
+    }
+
+    /**
+     * Chooses the policy for the current connection, and remembers it, also across restarts, if it
+     * is not the latest one chosen. Only called by {@link #updateConnection}.
+     *
+     * @return true if the policy has changed.
+     */
+    private synchronized boolean choosePolicy() {
+        FetchPolicy policy = getPolicy();
+        if (policy == lastPolicy) return false;
+        lastPolicy = policy;
+        preferences.edit().putString(KEY_LAST_POLICY, policy.name).apply();
+        return true;
+    }
+
+    /**
+     * Checks the type of the active connection and whether it is metered. The throughput measured
+     * on another network is forgotten.
+     *
+     * @return true if the connection has changed since the previous check.
+     */
+    private synchronized boolean update() {
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        FetchPolicy.Connection newConnection = connectionOf(networkInfo);
+        boolean newMetered = newConnection != FetchPolicy.Connection.NONE && connectivityManager.isActiveNetworkMetered();
+        if (newConnection == connection && newMetered == metered) return false;
+        if (newConnection != connection) Throughput.reset();
+        connection = newConnection;
+        metered = newMetered;
+        return true;
+    }
+
+    /**
+     * Returns the type of a connection.
+     *
+     * @param networkInfo is the information of the active network, or null.
+     * @return the type of the connection.
+     */
+    private static FetchPolicy.Connection connectionOf(NetworkInfo networkInfo) {
+        if (networkInfo == null || !networkInfo.isConnected()) return FetchPolicy.Connection.NONE;
+        switch (networkInfo.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                return FetchPolicy.Connection.WIFI;
+            case ConnectivityManager.TYPE_ETHERNET:
+                return FetchPolicy.Connection.ETHERNET;
+            case ConnectivityManager.TYPE_MOBILE:
+                switch (networkInfo.getSubtype()) {
+                    case TelephonyManager.NETWORK_TYPE_GPRS:
+                    case TelephonyManager.NETWORK_TYPE_EDGE:
+                    case TelephonyManager.NETWORK_TYPE_CDMA:
+                    case TelephonyManager.NETWORK_TYPE_1xRTT:
+                    case TelephonyManager.NETWORK_TYPE_IDEN:
+                        return FetchPolicy.Connection.SLOW_CELLULAR;
+                    default:
+                        return FetchPolicy.Connection.CELLULAR;
+                }
+            default:
+                return FetchPolicy.Connection.OTHER;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        long bytesPerSecond = Throughput.getBytesPerSecond();
+        return connection.name().toLowerCase(Locale.US) + (metered ? ", metered" : "")
+                + (bytesPerSecond == Throughput.UNKNOWN ? "" : ", " + bytesPerSecond / 1024 + " KB/s")
+                + ": " + getPolicy();
+    }
+}
@@ -17,29 +17,46 @@ package com.example.android.newsapp;
 
 /**
  * An {@link News} object contains information related to a single news.
+ * <p>
+ * Values are kept in their most compact form: the publication date as a timestamp, and the
+ * section and authors as Strings shared by every news with the same section or author. The text
+ * shown for the date and the authors is built the first time it is requested, and then reused.
  */
 class News {
-    private String title;   // Title of the news.
-    private String section; // Section name of the news.
-    private String url;     // Url for the web page of the news at www.theguardian.com.
-    private String authors; // Authors of the news, comma separated.
-    private String date;    // Publication date of the news.
+    // Value of {@link #getPublishedAt()} for news without publication date.
+    static final long UNKNOWN_DATE = Long.MIN_VALUE;
+
+    // Shared empty list of authors.
+    static final String[] NO_AUTHORS = new String[0];
+
+    private final String title;     // Title of the news.
+    private final String section;   // Section name of the news.
+    private final String url;       // Url for the web page of the news at www.theguardian.com.
+    private final String thumbnail; // Url of the thumbnail image of the news, or empty.
+    private final String[] authors; // Authors of the news.
+    private final long publishedAt; // Publication date of the news, in milliseconds since epoch.
+
+    private String authorsText;     // Authors of the news, comma separated, once requested.
+    private String dateText;        // Publication date of the news, once requested.
 
     /**
      * Constructs a new {@link News} object.
      *
-     * @param title   is the title of the news.
-     * @param section is the section of the news.
-     * @param url     is the url for the web page of the news at www.theguardian.com.
-     * @param authors is the list of authors of the news, separated by commas.
-     * @param date    is the publication date of the news.
+     * @param title       is the title of the news.
+     * @param section     is the section of the news.
+     * @param url         is the url for the web page of the news at www.theguardian.com.
+     * @param thumbnail   is the url of the thumbnail image of the news, or an empty String.
+     * @param authors     is the list of authors of the news.
+     * @param publishedAt is the publication date of the news, in milliseconds since epoch (UTC),
+     *                    or {@link #UNKNOWN_DATE}.
      */
-    News(String title, String section, String url, String authors, String date) {
+    News(String title, String section, String url, String thumbnail, String[] authors, long publishedAt) {
         this.title = title;
         this.section = section;
         this.url = url;
+        this.thumbnail = thumbnail;
         this.authors = authors;
-        this.date = date;
+        this.publishedAt = publishedAt;
     }
 
     /**
@@ -57,11 +74,106 @@ class News {
         return url;
     }
 
-    String getAuthors() {
+    String getThumbnail() {
+        return thumbnail;
+    }
+
+    String[] getAuthorList() {
         return authors;
     }
 
+    int getAuthorCount() {
+        return authors.length;
+    }
+
+    long getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Returns the authors of the news, comma separated.
+     *
+     * @return the authors of the news, or an empty String if there are none.
+     */
+    String getAuthors() {
+        if (authorsText == null) {
+            if (authors.length == 1) authorsText = authors[0];
+            else {
+                StringBuilder text = new StringBuilder();
+                for (String author : authors) {
+                    if (text.length() > 0) text.append(", ");
+                    text.append(author);
+                }
+                authorsText = text.toString();
+            }
+        }
+        return authorsText;
+    }
+
+    /**
+     * Returns the publication date of the news, in the format "YYYY-MM-DD HH:MM:SS" (UTC).
+     *
+     * @return the publication date of the news, or an empty String if it is unknown.
+     */
     String getDate() {
-        return date;
+        if (dateText == null) dateText = publishedAt == UNKNOWN_DATE ? "" : formatDate(publishedAt);
+        return dateText;
+    }
+
+    /**
+     * Formats a timestamp as "YYYY-MM-DD HH:MM:SS", in UTC.
+     *
+     * @param millis is the number of milliseconds since epoch.
+     * @return the formatted date and time.
+     */
+    static String formatDate(long millis) {
+        long seconds = floorDiv(millis, 1000L);
+        long days = floorDiv(seconds, 86400L);
+        int secondOfDay = (int) (seconds - days * 86400L);
+
+        // Convert the number of days since epoch into a civil date (proleptic Gregorian calendar).
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] text = new char[19];
+        writeDigits(text, 0, (int) year, 4);
+        text[4] = '-';
+        writeDigits(text, 5, month, 2);
+        text[7] = '-';
+        writeDigits(text, 8, day, 2);
+        text[10] = ' ';
+        writeDigits(text, 11, secondOfDay / 3600, 2);
+        text[13] = ':';
+        writeDigits(text, 14, secondOfDay / 60 % 60, 2);
+        text[16] = ':';
+        writeDigits(text, 17, secondOfDay % 60, 2);
+        return new String(text);
+    }
+
+    /**
+     * Integer division rounded towards negative infinity, as Math.floorDiv (not available in
+     * every supported API level).
+     */
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) q--;
+        return q;
+    }
+
+    /**
+     * Writes a number with a fixed number of digits, padded with zeros.
+     */
+    private static void writeDigits(char[] text, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 }
@@ -17,95 +17,616 @@ package com.example.android.newsapp;
 
 import android.app.LoaderManager.LoaderCallbacks;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.view.MenuItemCompat;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-import butterknife.BindView;
-import butterknife.ButterKnife;
-
-public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<List<News>> {
-    // Constant value for the news loader ID.
-    private static final int NEWS_LOADER_ID = 1;
-
-    // Harcoded url for retrieving news with these filters:
-    //
-    // * News about Spain (q=real%20madrid).
-    // * Show only news with authors (reference-type=author).
-    // * Show the list of authors (show-references=author).
-    // * Retrieve list of 50 news (page-size=50).
-    // * Get the latest news (order-by=newest).
-    private static final String url = "http://content.guardianapis.com/search?q=spain&api-key=test&reference-type=author&show-references=author&page-size=50&order-by=newest";
-    // Using the ButterKnife library for view injection.
-    @BindView(R.id.list)
-    ListView newsListView;
-    @BindView(R.id.loading_indicator)
-    View loadingIndicator;
-    @BindView(R.id.empty_view)
-    TextView emptyStateTextView;
-    // Adapter for the list of news.
+public class NewsActivity extends AppCompatActivity implements NewsFeed.Listener, NetworkMonitor.Listener,
+        NewsFilterEngine.Listener, LoaderCallbacks<List<News>> {
+    private static final String LOG_TAG = NewsActivity.class.getSimpleName();
+
+    // Constant value for the search loader ID.
+    private static final int SEARCH_LOADER_ID = 1;
+    // Keys of the saved state and of the loader arguments.
+    private static final String STATE_SEARCH_TEXT = "searchText";
+    private static final String ARG_SEARCH_TEXT = "text";
+    private static final String STATE_SNAPSHOT_TIME = "snapshotTime";
+    private static final String STATE_SORT_ORDER = "sortOrder";
+    private static final String STATE_SECTIONS = "sections";
+    private static final String STATE_AUTHORS = "authors";
+    private static final String STATE_DATE_WINDOW = "dateWindow";
+
+    // Windows of time for the "Published" filter: the last day and the last week.
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    private static final long WEEK_MILLIS = 7 * DAY_MILLIS;
+
+    // Name of the file, in the cache directory, with the snapshot of the list.
+    private static final String SNAPSHOT_FILE = "news_snapshot";
+
+    // Views of the layout, looked up directly, as binding them by reflection delays the first
+    // frame.
+    private RecyclerView newsListView;
+    private View loadingIndicator;      // Placeholder rows shown until there are news to show.
+    private TextView emptyStateTextView;
+    // Adapter and layout manager for the list of news.
     private NewsAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    // Monitor of the network connection, and policy for fetching the news through it.
+    private NetworkMonitor networkMonitor;
+    private FetchPolicy policy;
+    // Feed of news, retained across configuration changes.
+    private NewsFeed feed;
+    // Latest news delivered by the feed, shown again when the search is closed.
+    private List<News> loadedNews;
+    // Failure of the latest load of the feed, or null.
+    private NewsFetchException feedError;
+    // Text being searched in the stored news, or null if the user is not searching, and whether
+    // the results from the store have arrived for it.
+    private String searchText;
+    private boolean searchLoaded;
+    // Filter and order of the list, applied by the engine to the loaded news, and window of time
+    // of its "Published" condition, or 0 for any time.
+    private NewsFilterEngine filterEngine;
+    private NewsIndex.Filter filter = new NewsIndex.Filter();
+    private long dateWindow;
+    // Time when the activity was created, as returned by System.nanoTime(), for measuring the time
+    // to the first frame and to the complete list of news.
+    private long createdNanos;
+    // Whether the complete list of news has already been shown once.
+    private boolean fullyDrawn;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        createdNanos = System.nanoTime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.news_activity);
-        ButterKnife.bind(this);
+        newsListView = (RecyclerView) findViewById(R.id.list);
+        loadingIndicator = findViewById(R.id.loading_indicator);
+        emptyStateTextView = (TextView) findViewById(R.id.empty_view);
+        networkMonitor = NetworkMonitor.getInstance(this);
+        policy = networkMonitor.getPolicy();
+        filterEngine = new NewsFilterEngine(this);
+        if (savedInstanceState != null) restoreFilter(savedInstanceState);
 
         // Set title.
         setTitle(R.string.app_title);
 
-        // Find a reference to the {@link ListView} in the layout.
-        newsListView.setEmptyView(emptyStateTextView);
-
-        // Create a new adapter that takes an empty list of news as input.
-        adapter = new NewsAdapter(this, new ArrayList<News>());
-
-        // Set the adapter on the {@link ListView} so the list can be populated in the user
-        // interface.
-        newsListView.setAdapter(adapter);
+        // Lay out the news in a vertical list, separated by dividers.
+        layoutManager = new LinearLayoutManager(this);
+        newsListView.setLayoutManager(layoutManager);
+        newsListView.addItemDecoration(new DividerItemDecoration(this, LinearLayoutManager.VERTICAL));
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with more information about the selected news.
-        newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Create a new adapter with a click listener, which opens the selected news in the reader
+        // if its body has been prefetched, or sends an intent to a web browser otherwise.
+        adapter = new NewsAdapter(new NewsAdapter.OnNewsClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
+            public void onNewsClick(News news) {
+                if (ArticleStore.getInstance(NewsActivity.this).contains(news.getUrl())) {
+                    Metrics.articlesReadOffline.incrementAndGet();
+                    startActivity(ReaderActivity.intentFor(NewsActivity.this, news));
+                    return;
+                }
+
                 // Create a new intent to view the news URI and send the intent to launch a new
                 // activity.
-                Uri newsUri = Uri.parse(adapter.getItem(position).getUrl());
+                Metrics.articlesOpenedInBrowser.incrementAndGet();
+                Uri newsUri = Uri.parse(news.getUrl());
                 Intent websiteIntent = new Intent(Intent.ACTION_VIEW, newsUri);
                 startActivity(websiteIntent);
             }
+        }, ThumbnailLoader.getInstance(this));
+        adapter.setFetchPolicy(policy);
+
+        // Set the adapter on the {@link RecyclerView} so the list can be populated in the user
+        // interface.
+        newsListView.setAdapter(adapter);
+
+        // Load the next page of news when the user scrolls near the end of the list.
+        newsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (searchText != null) return;
+                int totalItemCount = adapter.getItemCount();
+                if (totalItemCount > 0 && layoutManager.findLastVisibleItemPosition() >= totalItemCount - 1 - policy.prefetchDistance)
+                    feed.loadNextPage();
+            }
+        });
+
+        // Attach to the feed retained from the previous configuration, if any, which requests its
+        // next pages with the current policy, or start a new one. The feed is started even
+        // without network connection, so cached news can still be shown. If the process was
+        // killed while the activity was in the background, the new feed starts from the snapshot
+        // of the list, so it is shown right away, at the same scroll position.
+        feed = (NewsFeed) getLastCustomNonConfigurationInstance();
+        if (feed != null) {
+            feed.setQueries(buildQueries(this, policy));
+            feed.setListener(this);
+        } else {
+            startFeed(savedInstanceState != null
+                    ? readSnapshot(savedInstanceState.getLong(STATE_SNAPSHOT_TIME)) : null);
+        }
+
+        // Resume the search the user was doing before the activity was recreated, if any. Pass in
+        // this activity for the LoaderCallbacks parameter (which is valid because this activity
+        // implements the LoaderCallbacks interface).
+        if (savedInstanceState != null) searchText = savedInstanceState.getString(STATE_SEARCH_TEXT);
+        if (searchText != null) getLoaderManager().initLoader(SEARCH_LOADER_ID, searchArgs(searchText), this);
+
+        // Anything not needed for showing the news waits until the first frame has been drawn.
+        final ViewTreeObserver observer = newsListView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (observer.isAlive()) observer.removeOnPreDrawListener(this);
+                Metrics.firstDraw.record(Metrics.elapsedMicros(createdNanos));
+                deferInitialization();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Performs the initialization that is not needed for showing the news, once the UI thread has
+     * nothing else to do.
+     */
+    private void deferInitialization() {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (isFinishing()) return false;
+
+                // Adapt to the changes of the connection from now on.
+                networkMonitor.addListener(NewsActivity.this);
+
+                // Keep the cached news up to date in the background.
+                NewsSyncJobService.schedule(NewsActivity.this);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Starts a new feed of news, with the pages of the current fetch policy, replacing the current
+     * one, if any.
+     *
+     * @param snapshot is a snapshot of a previous feed to start from, or null.
+     */
+    private void startFeed(NewsSnapshot snapshot) {
+        if (feed != null) feed.cancel();
+        feed = new NewsFeed(this, buildQueries(this, policy));
+        if (snapshot != null) feed.restore(snapshot);
+        feed.setListener(this);
+        feed.start();
+    }
+
+    /**
+     * Reads the snapshot of the list saved along with the state of the activity. This is done on
+     * the UI thread, so the list can be laid out at its previous scroll position, as reading a
+     * snapshot only takes a few milliseconds.
+     *
+     * @param savedAt is the time of the snapshot saved with the state of the activity, or 0.
+     * @return the snapshot, or null if there is none for the saved state.
+     */
+    private NewsSnapshot readSnapshot(long savedAt) {
+        if (savedAt == 0) return null;
+        long start = System.nanoTime();
+        try {
+            NewsSnapshot snapshot = NewsSnapshot.read(new File(getCacheDir(), SNAPSHOT_FILE));
+            Metrics.snapshotRead.record(Metrics.elapsedMicros(start));
+            return snapshot != null && snapshot.savedAt == savedAt ? snapshot : null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the snapshot of the news.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adapts the list to a new connection: thumbnails and prefetching follow the new policy right
+     * away, and the next pages are requested with its page size and fields, keeping the news
+     * already loaded. If the latest load failed, or the list is empty, it is tried again as soon
+     * as there is a connection.
+     *
+     * @param connected is whether there is a connection now.
+     * @param policy    is the policy for the new connection.
+     */
+    @Override
+    public void onNetworkChanged(boolean connected, FetchPolicy policy) {
+        this.policy = policy;
+        adapter.setFetchPolicy(policy);
+        if (connected && (feedError != null || (loadedNews != null && loadedNews.isEmpty()))) startFeed(null);
+        else if (feed != null) feed.setQueries(buildQueries(this, policy));
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        // Keep the feed, with the news loaded and the requests in flight, for the next activity.
+        return feed;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Decoded thumbnails are the bulk of the memory of the app, and can be loaded again.
+        ThumbnailLoader.getInstance(this).trimMemory(level);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The feed must not deliver news to a destroyed activity. If the activity is not coming
+        // back, the work in flight is no longer needed either.
+        feed.setListener(null);
+        if (!isChangingConfigurations()) feed.cancel();
+        networkMonitor.removeListener(this);
+        filterEngine.release();
+    }
+
+    /**
+     * Shows the news of the feed as they are loaded: first the cached ones, then the ones from the
+     * network as they are parsed. If the load failed, the news shown are the cached ones and the
+     * user is told why they could not be updated.
+     *
+     * @param news    is every news loaded so far.
+     * @param loading is whether more news are still being loaded.
+     * @param error   is the failure of the latest load, or null.
+     */
+    @Override
+    public void onNewsChanged(List<News> news, boolean loading, NewsFetchException error) {
+        loadedNews = news;
+        boolean newError = error != null && error != feedError;
+        feedError = error;
+
+        // Keep the loading indicator until there is something to show.
+        if (loading && news.isEmpty()) return;
+        loadingIndicator.setVisibility(View.GONE);
+
+        // An empty list shows the failure in its empty state. Otherwise, the user is told that the
+        // news shown may be out of date.
+        if (newError && !news.isEmpty())
+            Toast.makeText(this, errorMessageFor(error), Toast.LENGTH_LONG).show();
+        filterEngine.setNews(news);
+        if (searchText == null && filter.isDefault()) showNews(news, false);
+
+        // The first complete list marks the end of the startup, for the system and for the
+        // metrics.
+        if (!loading && !fullyDrawn) {
+            fullyDrawn = true;
+            Metrics.fullContent.record(Metrics.elapsedMicros(createdNanos));
+            reportFullyDrawn();
+        }
+
+        if (!loading && !news.isEmpty()) prefetchArticles(news);
+    }
+
+    /**
+     * Prefetches the bodies of the top news once the UI thread has nothing else to do, if the
+     * connection is unmetered, so they can be read later in the app, even offline.
+     *
+     * @param news is the complete list of news.
+     */
+    private void prefetchArticles(final List<News> news) {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!isFinishing() && networkMonitor.isUnmetered())
+                    ArticlePrefetcher.getInstance(NewsActivity.this).prefetch(news);
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.news_menu, menu);
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.search_hint));
+        menu.findItem(R.id.action_offline_articles).setChecked(ArticlePrefetcher.getInstance(this).isEnabled());
+        menu.findItem(sortItemFor(filter.order)).setChecked(true);
+        menu.findItem(dateWindow == DAY_MILLIS ? R.id.date_day : dateWindow == WEEK_MILLIS ? R.id.date_week : R.id.date_any)
+                .setChecked(true);
+
+        // Show the search again after the activity has been recreated. This is done before adding
+        // the listeners, so the search is not restarted.
+        if (searchText != null) {
+            MenuItemCompat.expandActionView(searchItem);
+            searchView.setQuery(searchText, false);
+            searchView.clearFocus();
+        }
+
+        // Search the stored news as the user types.
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText);
+                return true;
+            }
+        });
+
+        // Show the loaded news again when the search is closed.
+        MenuItemCompat.setOnActionExpandListener(searchItem, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                searchText = null;
+                getLoaderManager().destroyLoader(SEARCH_LOADER_ID);
+                showFeedNews();
+                return true;
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        NewsIndex.Filter newFilter = filter.copy();
+        switch (item.getItemId()) {
+            case R.id.action_offline_articles:
+                boolean enabled = !item.isChecked();
+                item.setChecked(enabled);
+                ArticlePrefetcher.getInstance(this).setEnabled(enabled);
+                if (enabled && loadedNews != null && !loadedNews.isEmpty()) prefetchArticles(loadedNews);
+                return true;
+            case R.id.sort_newest:
+                newFilter.order = NewsIndex.Order.NEWEST;
+                break;
+            case R.id.sort_oldest:
+                newFilter.order = NewsIndex.Order.OLDEST;
+                break;
+            case R.id.sort_title:
+                newFilter.order = NewsIndex.Order.TITLE;
+                break;
+            case R.id.sort_section:
+                newFilter.order = NewsIndex.Order.SECTION;
+                break;
+            case R.id.date_any:
+                dateWindow = 0;
+                break;
+            case R.id.date_day:
+                dateWindow = DAY_MILLIS;
+                break;
+            case R.id.date_week:
+                dateWindow = WEEK_MILLIS;
+                break;
+            case R.id.action_filter_sections:
+                chooseSections();
+                return true;
+            case R.id.action_filter_authors:
+                chooseAuthors();
+                return true;
+            case R.id.action_clear_filters:
+                newFilter = new NewsIndex.Filter();
+                dateWindow = 0;
+                break;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+        item.setChecked(true);
+        setFilter(newFilter);
+        return true;
+    }
+
+    /**
+     * Returns the menu item of an order of the list.
+     *
+     * @param order is the order.
+     * @return the id of the menu item.
+     */
+    private static int sortItemFor(NewsIndex.Order order) {
+        switch (order) {
+            case OLDEST:
+                return R.id.sort_oldest;
+            case TITLE:
+                return R.id.sort_title;
+            case SECTION:
+                return R.id.sort_section;
+            default:
+                return R.id.sort_newest;
+        }
+    }
+
+    /**
+     * Lets the user choose the sections of the news shown, among those of the loaded news.
+     */
+    private void chooseSections() {
+        NewsIndex index = filterEngine.getIndex();
+        List<String> sections = index != null ? index.getSections() : Collections.<String>emptyList();
+        chooseValues(R.string.action_filter_sections, sections, filter.sections, new ValuesListener() {
+            @Override
+            public void onValuesChosen(Set<String> values) {
+                NewsIndex.Filter newFilter = filter.copy();
+                newFilter.sections = values;
+                setFilter(newFilter);
+            }
+        });
+    }
+
+    /**
+     * Lets the user choose the authors of the news shown, among those of the loaded news.
+     */
+    private void chooseAuthors() {
+        NewsIndex index = filterEngine.getIndex();
+        List<String> authors = index != null ? index.getAuthors() : Collections.<String>emptyList();
+        chooseValues(R.string.action_filter_authors, authors, filter.authors, new ValuesListener() {
+            @Override
+            public void onValuesChosen(Set<String> values) {
+                NewsIndex.Filter newFilter = filter.copy();
+                newFilter.authors = values;
+                setFilter(newFilter);
+            }
         });
+    }
+
+    /**
+     * Interface for receiving the values chosen in a dialog.
+     */
+    private interface ValuesListener {
+        void onValuesChosen(Set<String> values);
+    }
+
+    /**
+     * Shows a dialog for choosing any number of values. The values currently chosen are offered
+     * too, even if no loaded news has them anymore, so they can be unchosen.
+     *
+     * @param title    is the string resource of the title of the dialog.
+     * @param values   are the values to choose from, in the order they are offered.
+     * @param chosen   are the values currently chosen.
+     * @param listener is the listener for the values chosen, if the user confirms them.
+     */
+    private void chooseValues(int title, List<String> values, Set<String> chosen, final ValuesListener listener) {
+        final List<String> choices = new ArrayList<>(chosen);
+        for (String value : values) {
+            if (!chosen.contains(value)) choices.add(value);
+        }
+        final boolean[] checked = new boolean[choices.size()];
+        for (int i = 0; i < checked.length; i++) checked[i] = chosen.contains(choices.get(i));
+
+        new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMultiChoiceItems(choices.toArray(new CharSequence[choices.size()]), checked,
+                        new DialogInterface.OnMultiChoiceClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+                                checked[which] = isChecked;
+                            }
+                        })
+                .setNegativeButton(android.R.string.cancel, null)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Set<String> values = new HashSet<>();
+                        for (int i = 0; i < checked.length; i++) {
+                            if (checked[i]) values.add(choices.get(i));
+                        }
+                        listener.onValuesChosen(values);
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Replaces the filter of the list, and shows the news again with it: the loaded news, or the
+     * results of the search, if the user is searching.
+     *
+     * @param newFilter is the new filter, without its date range, which follows the window of
+     *                  time chosen.
+     */
+    private void setFilter(NewsIndex.Filter newFilter) {
+        newFilter.fromDate = dateWindow > 0 ? System.currentTimeMillis() - dateWindow : Long.MIN_VALUE;
+        filter = newFilter;
+        if (searchText != null) search(searchText);
+        else showFeedNews();
+    }
+
+    /**
+     * Restores the filter of the list saved along with the state of the activity.
+     *
+     * @param savedInstanceState is the saved state.
+     */
+    private void restoreFilter(Bundle savedInstanceState) {
+        String order = savedInstanceState.getString(STATE_SORT_ORDER);
+        if (order != null) filter.order = NewsIndex.Order.valueOf(order);
+        String[] sections = savedInstanceState.getStringArray(STATE_SECTIONS);
+        if (sections != null) filter.sections = new HashSet<>(Arrays.asList(sections));
+        String[] authors = savedInstanceState.getStringArray(STATE_AUTHORS);
+        if (authors != null) filter.authors = new HashSet<>(Arrays.asList(authors));
+        dateWindow = savedInstanceState.getLong(STATE_DATE_WINDOW);
+        if (dateWindow > 0) filter.fromDate = System.currentTimeMillis() - dateWindow;
+    }
 
-        // If there is a network connection, fetch data.
-        if (isThereConnection()) {
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            getLoaderManager().initLoader(NEWS_LOADER_ID, null, this);
+    /**
+     * Shows the results of the filter found so far. While searching, they only stand in for the
+     * results from the store, which also cover the news that are not loaded, until they arrive.
+     *
+     * @param results  is the list of results.
+     * @param complete is whether every result has been found.
+     */
+    @Override
+    public void onResults(List<News> results, boolean complete) {
+        if (searchText != null) {
+            if (!searchLoaded && !results.isEmpty()) showNews(results, true);
+        } else if (!filter.isDefault()) {
+            showNews(results, true);
+        }
+    }
+
+    /**
+     * Searches the stored news whose titles contain the given text, and shows them in the list.
+     *
+     * @param text is the text typed by the user.
+     */
+    private void search(String text) {
+        searchText = text;
+        if (NewsStore.toMatchExpression(text) == null) {
+            // There are no words to search for yet: show the loaded news meanwhile.
+            getLoaderManager().destroyLoader(SEARCH_LOADER_ID);
+            showFeedNews();
         } else {
-            // Otherwise, display error.
-            loadingIndicator.setVisibility(View.GONE);
-            emptyStateTextView.setText(R.string.no_internet_connection);
+            // The loaded news that match are shown right away, while the store is searched.
+            NewsIndex.Filter searchFilter = filter.copy();
+            searchFilter.text = text;
+            searchLoaded = false;
+            filterEngine.setFilter(searchFilter);
+            getLoaderManager().restartLoader(SEARCH_LOADER_ID, searchArgs(text), this);
         }
     }
 
+    /**
+     * Builds the arguments of the search loader.
+     *
+     * @param text is the text to be searched.
+     * @return the arguments for the loader.
+     */
+    private static Bundle searchArgs(String text) {
+        Bundle args = new Bundle();
+        args.putString(ARG_SEARCH_TEXT, text);
+        return args;
+    }
+
     @Override
-    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
-        // Create a new loader for the given URL.
-        return new NewsLoader(this, url);
+    public Loader<List<News>> onCreateLoader(int id, Bundle bundle) {
+        // Create a new loader for searching the stored news.
+        return new NewsSearchLoader(this, bundle.getString(ARG_SEARCH_TEXT), filter);
     }
 
     @Override
@@ -113,29 +634,118 @@ public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<L
         // Hide loading indicator because the data has been loaded.
         loadingIndicator.setVisibility(View.GONE);
 
-        // Clear the adapter of previous news data.
-        adapter.clear();
+        // The results are only shown if the user is still searching.
+        searchLoaded = true;
+        if (searchText != null) showNews(news, true);
+    }
 
-        // Checks if there's still network connection.
-        if (isThereConnection()) {
-            // If there is network connection and we have retrieved a valid list of {@link News}s,
-            // then add them to the adapter's data set. This will trigger the ListView to update.
-            if (news != null && !news.isEmpty()) {
-                adapter.addAll(news);
-            } else {
+    /**
+     * Shows the news of the feed again, after searching or changing the filter. The news go
+     * through the filter engine, unless every news is shown in the order of the feed. If the feed
+     * has not delivered any news yet, the list is just cleared until it does.
+     */
+    private void showFeedNews() {
+        if (!filter.isDefault()) {
+            filterEngine.setFilter(filter);
+            return;
+        }
+        filterEngine.setFilter(null);
+        if (loadedNews != null) showNews(loadedNews, false);
+        else {
+            adapter.setNews(Collections.<News>emptyList());
+            emptyStateTextView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Shows the given news in the list, or the empty state if there are none.
+     *
+     * @param news     is the list of news to be shown, or null.
+     * @param isSearch is whether the news are the results of a search or of a filter.
+     */
+    private void showNews(List<News> news, boolean isSearch) {
+        // If we have retrieved a valid list of {@link News}s, either from the network, from the
+        // cache or from the store, then set them as the adapter's data set. This will trigger the RecyclerView to
+        // update the rows that changed.
+        if (news != null && !news.isEmpty()) {
+            adapter.setNews(news);
+            emptyStateTextView.setVisibility(View.GONE);
+        } else {
+            adapter.setNews(Collections.<News>emptyList());
+            emptyStateTextView.setVisibility(View.VISIBLE);
+            if (isSearch) {
                 // Set empty state text to display "No results found".
                 emptyStateTextView.setText(R.string.no_results);
+            } else if (!networkMonitor.isConnected()) {
+                // There is no network connection.
+                emptyStateTextView.setText(R.string.no_internet_connection);
+            } else if (feedError != null) {
+                // The news could not be retrieved.
+                emptyStateTextView.setText(errorMessageFor(feedError));
+            } else {
+                emptyStateTextView.setText(R.string.no_results);
             }
-        } else {
-            // There is no network connection.
-            emptyStateTextView.setText(R.string.no_internet_connection);
+        }
+    }
+
+    /**
+     * Returns the message shown to the user for a failed request.
+     *
+     * @param error is the failure of the request.
+     * @return the string resource of the message.
+     */
+    private static int errorMessageFor(NewsFetchException error) {
+        switch (error.kind) {
+            case NETWORK:
+                return R.string.error_network;
+            case RATE_LIMITED:
+                return R.string.error_rate_limited;
+            case SERVER_ERROR:
+                return R.string.error_server;
+            case CIRCUIT_OPEN:
+                return R.string.error_unavailable;
+            case MALFORMED_RESPONSE:
+                return R.string.error_malformed_response;
+            default:
+                return R.string.error_invalid_request;
         }
     }
 
     @Override
     public void onLoaderReset(Loader<List<News>> loader) {
-        // Loader reset, so we can clear out our existing data.
-        adapter.clear();
+        // The search loader is only reset when the search is closed, and then the news of the
+        // feed are shown instead.
+    }
+
+    /**
+     * Builds a query for every search terms in the news_queries array resource, with these
+     * filters:
+     * <p>
+     * * Show only news with authors (reference-type=author).
+     * * Show the list of authors (show-references=author).
+     * * Show the thumbnail of every news (show-fields=thumbnail), unless the policy leaves
+     * thumbnails out, and no other field.
+     * * Get the latest news (order-by=newest).
+     * <p>
+     * With a single query, news are retrieved in pages of the size given by the policy, as the
+     * user scrolls down the list. With several queries, the first page of every one is retrieved
+     * at once, and they are merged into a single list.
+     *
+     * @param context of the app.
+     * @param policy  is the policy for fetching the news.
+     * @return the list of queries, for their first page.
+     */
+    static List<NewsQuery> buildQueries(Context context, FetchPolicy policy) {
+        NewsQuery.Builder builder = new NewsQuery.Builder()
+                .referenceType("author")
+                .showReferences("author")
+                .showFields(policy.showFields())
+                .order(NewsQuery.Order.NEWEST)
+                .pageSize(policy.pageSize);
+        String[] terms = context.getResources().getStringArray(R.array.news_queries);
+        List<NewsQuery> queries = new ArrayList<>(terms.length);
+        for (String term : terms) queries.add(builder.terms(term).build());
+        return queries;
     }
 
     /**
@@ -146,8 +756,31 @@ public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<L
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        // Save the ListView state (includes scroll position) as a Parcelable.
-        outState.putParcelable("newsListViewState", newsListView.onSaveInstanceState());
+        // Save the list state (includes scroll position) as a Parcelable.
+        outState.putParcelable("newsListViewState", layoutManager.onSaveInstanceState());
+        // Save the text being searched, if any, and the filter of the list.
+        outState.putString(STATE_SEARCH_TEXT, searchText);
+        outState.putString(STATE_SORT_ORDER, filter.order.name());
+        outState.putStringArray(STATE_SECTIONS, filter.sections.toArray(new String[filter.sections.size()]));
+        outState.putStringArray(STATE_AUTHORS, filter.authors.toArray(new String[filter.authors.size()]));
+        outState.putLong(STATE_DATE_WINDOW, dateWindow);
+
+        // Save a snapshot of the list, in case the process is killed while the activity is in the
+        // background. It is written on a background thread, in the order the snapshots are taken.
+        final NewsSnapshot snapshot = feed.snapshot();
+        if (snapshot == null) return;
+        outState.putLong(STATE_SNAPSHOT_TIME, snapshot.savedAt);
+        final File file = new File(getCacheDir(), SNAPSHOT_FILE);
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot.write(file);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the snapshot of the news.", e);
+                }
+            }
+        });
     }
 
     /**
@@ -159,19 +792,22 @@ public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<L
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
         if (savedInstanceState != null) {
-            // Restore previous state (including selected item index and scroll position).
-            newsListView.onRestoreInstanceState(savedInstanceState.getParcelable("newsListViewState"));
+            // Restore previous state (including scroll position).
+            layoutManager.onRestoreInstanceState(savedInstanceState.getParcelable("newsListViewState"));
         }
     }
 
     /**
-     * Checks if there is connection to network.
-     *
-     * @return true if there is network connection, false otherwise.
+     * Prints the state of the activity along with the {@link Metrics} of the app, for
+     * "adb shell dumpsys activity". The "reset-metrics" argument forgets the metrics afterwards.
      */
-    boolean isThereConnection() {
-        ConnectivityManager connMgr = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-        return networkInfo != null && networkInfo.isConnected();
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println("Network: " + networkMonitor);
+        writer.println();
+        writer.println("Metrics:");
+        Metrics.dump(writer);
+        if (args != null && Arrays.asList(args).contains("reset-metrics")) Metrics.reset();
     }
 }
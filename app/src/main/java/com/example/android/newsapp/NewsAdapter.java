@@ -15,118 +15,361 @@
  */
 package com.example.android.newsapp;
 
-import android.content.Context;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-
-import butterknife.BindView;
-import butterknife.ButterKnife;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * An {@link NewsAdapter} knows how to create a list item layout for each news in the data source (a
- * list of {@link News} objects). These list item layouts will be provided to an adapter view like
- * ListView to be displayed to the user.
+ * list of {@link News} objects). These list item layouts will be provided to a RecyclerView to be
+ * displayed to the user.
+ * <p>
+ * Every news has a stable id derived from its URL. When the list of news changes, the differences
+ * with the previous list are computed on a background thread, so only the rows that actually
+ * changed are bound again.
+ * <p>
+ * Thumbnails are loaded by a {@link ThumbnailLoader}, and the request of a row is cancelled as
+ * soon as the row is recycled.
+ * <p>
+ * The layouts of the titles are computed by {@link TitleLayouts} on a background thread as soon as
+ * a list of news is set, so binding a row doesn't measure its title on the UI thread.
  */
-class NewsAdapter extends ArrayAdapter<News> {
-    // Using the ButterKnife library for view injection.
-    @BindView(R.id.news_title)
-    TextView titleView;
-    @BindView(R.id.news_section)
-    TextView sectionView;
-    @BindView(R.id.news_date)
-    TextView dateView;
-    @BindView(R.id.news_author)
-    TextView authorView;
-    @BindView(R.id.news_section_title)
-    TextView sectionTitleView;
-    @BindView(R.id.news_date_title)
-    TextView dateTitleView;
-    @BindView(R.id.news_author_title)
-    TextView authorTitleView;
+class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder> {
+    // Thread for computing the differences between lists of news, off the main thread.
+    private static final ExecutorService diffExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Interface for receiving clicks on the news of the list.
+     */
+    interface OnNewsClickListener {
+        void onNewsClick(News news);
+    }
+
+    private final OnNewsClickListener listener;     // Listener for clicks on the news.
+    private final ThumbnailLoader thumbnailLoader;  // Loader of the thumbnails of the news.
+    private FetchPolicy policy = FetchPolicy.STANDARD;  // Policy for the quality of the thumbnails.
+    private int thumbnailWidth;                     // Size of the thumbnail views, in pixels.
+    private int thumbnailHeight;
+    private TitleLayouts titleLayouts;              // Layouts of the titles of the news.
+    private int titleWidth;                         // Width of a title, in pixels, or 0 if unknown.
+    private int titleWidthWithThumbnail;            // Width of the title of a news with thumbnail.
+    private CharSequence authorLabel;               // Labels for one and for several authors.
+    private CharSequence authorsLabel;
+    private final Handler mainHandler;              // Handler for applying updates on the UI thread.
+    private List<News> news = Collections.emptyList();  // News currently shown.
+    private int generation;                         // Number of updates requested so far.
+
+    /**
+     * Holds the views of a single list item, so they are looked up only once per row.
+     */
+    static class NewsViewHolder extends RecyclerView.ViewHolder {
+        // Views of the row, looked up directly, as binding them by reflection delays the first
+        // rows.
+        final ImageView thumbnailView;
+        final TitleView titleView;
+        final TextView sectionView;
+        final TextView dateView;
+        final TextView authorView;
+        final TextView sectionTitleView;
+        final TextView dateTitleView;
+        final TextView authorTitleView;
+
+        NewsViewHolder(View itemView) {
+            super(itemView);
+            thumbnailView = (ImageView) itemView.findViewById(R.id.news_thumbnail);
+            titleView = (TitleView) itemView.findViewById(R.id.news_title);
+            sectionView = (TextView) itemView.findViewById(R.id.news_section);
+            dateView = (TextView) itemView.findViewById(R.id.news_date);
+            authorView = (TextView) itemView.findViewById(R.id.news_author);
+            sectionTitleView = (TextView) itemView.findViewById(R.id.news_section_title);
+            dateTitleView = (TextView) itemView.findViewById(R.id.news_date_title);
+            authorTitleView = (TextView) itemView.findViewById(R.id.news_author_title);
+        }
+    }
 
     /**
      * Constructs a new {@link NewsAdapter}.
      *
-     * @param context of the app.
-     * @param news    is the list of news, which is the data source of the adapter.
+     * @param listener        is the listener for clicks on the news.
+     * @param thumbnailLoader is the loader of the thumbnails of the news.
      */
-    NewsAdapter(Context context, List<News> news) {
-        super(context, 0, news);
+    NewsAdapter(OnNewsClickListener listener, ThumbnailLoader thumbnailLoader) {
+        this.listener = listener;
+        this.thumbnailLoader = thumbnailLoader;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        setHasStableIds(true);
+    }
+
+    @Override
+    public int getItemCount() {
+        return news.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableId(news.get(position).getUrl());
     }
 
     /**
-     * Returns a list item view that displays information about the news at the given position in
-     * the list of news.
+     * Replaces the list of news. If the new list just appends news to the current one, the new
+     * rows are inserted right away; otherwise, the differences between both lists are computed on
+     * a background thread and dispatched when ready.
      *
-     * @param position    is the position of the item within the adapter's data set of the item
-     *                    whose view we want.
-     * @param convertView is the old view to reuse, if possible.
-     * @param parent      is the  parent that this view will eventually be attached to.
-     * @return a View corresponding to the data at the specified position.
+     * @param newNews is the new list of news. It must not be modified afterwards.
      */
-    @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Check if there is an existing list item view (called convertView) that we can reuse.
-        // Otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(R.layout.list_item, parent, false);
+    void setNews(final List<News> newNews) {
+        final List<News> oldNews = news;
+        final int updateGeneration = ++generation;
+        precomputeTitles(newNews);
+
+        if (isContinuation(oldNews, newNews)) {
+            news = newNews;
+            notifyItemRangeInserted(oldNews.size(), newNews.size() - oldNews.size());
+            return;
         }
-        ButterKnife.bind(this, listItemView);
+        if (oldNews.isEmpty() || newNews.isEmpty()) {
+            news = newNews;
+            notifyDataSetChanged();
+            return;
+        }
+
+        diffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new NewsDiffCallback(oldNews, newNews));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Discard the result if a later update has been requested meanwhile.
+                        if (updateGeneration != generation) return;
+                        news = newNews;
+                        result.dispatchUpdatesTo(NewsAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(final RecyclerView recyclerView) {
+        // Resources used by every row are resolved once, instead of on every bind.
+        Resources resources = recyclerView.getResources();
+        thumbnailWidth = resources.getDimensionPixelSize(R.dimen.thumbnail_width);
+        thumbnailHeight = resources.getDimensionPixelSize(R.dimen.thumbnail_height);
+        authorLabel = resources.getText(R.string.news_author);
+        authorsLabel = resources.getText(R.string.news_authors);
+        titleLayouts = new TitleLayouts(recyclerView.getContext());
+
+        // The width of the titles follows from the width of the list, which is known once it has
+        // been laid out, and changes with the orientation of the screen.
+        final int fixedWidth = 2 * resources.getDimensionPixelSize(R.dimen.list_item_padding);
+        final int thumbnailSpace = thumbnailWidth + resources.getDimensionPixelSize(R.dimen.thumbnail_margin);
+        recyclerView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View view, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                int width = right - left - recyclerView.getPaddingLeft() - recyclerView.getPaddingRight() - fixedWidth;
+                if (width == titleWidth) return;
+                titleWidth = width;
+                titleWidthWithThumbnail = width - thumbnailSpace;
+                precomputeTitles(news);
+            }
+        });
+    }
+
+    /**
+     * Starts computing the layouts of the titles of the given news in the background, once the
+     * width of the titles is known.
+     *
+     * @param newNews is the list of news to be shown.
+     */
+    private void precomputeTitles(List<News> newNews) {
+        if (titleLayouts != null && titleWidth > 0 && !newNews.isEmpty())
+            titleLayouts.precompute(newNews, titleWidth, titleWidthWithThumbnail);
+    }
+
+    @Override
+    public NewsViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+        final NewsViewHolder holder = new NewsViewHolder(listItemView);
+        listItemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) listener.onNewsClick(news.get(position));
+            }
+        });
+        return holder;
+    }
+
+    /**
+     * Sets the policy for fetching the thumbnails, which applies to the rows bound from now on.
+     *
+     * @param policy is the current fetch policy.
+     */
+    void setFetchPolicy(FetchPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Displays information about the news at the given position in the list of news.
+     *
+     * @param holder   is the holder of the views of the list item.
+     * @param position is the position of the news within the adapter's data set.
+     */
+    @Override
+    public void onBindViewHolder(NewsViewHolder holder, int position) {
+        long start = System.nanoTime();
 
         // Find the news at the given position in the list of news.
-        News currentNews = getItem(position);
+        News currentNews = news.get(position);
 
-        // Set the title of the news. If there is no title, hide the title view.
+        // Load the thumbnail of the news. If there is no thumbnail, hide the thumbnail view.
+        String thumbnail = currentNews.getThumbnail();
+        if (!thumbnail.isEmpty()) {
+            holder.thumbnailView.setVisibility(View.VISIBLE);
+            thumbnailLoader.load(holder.thumbnailView, policy.thumbnailUrl(thumbnail), thumbnailWidth,
+                    thumbnailHeight, policy.thumbnails != FetchPolicy.ThumbnailQuality.NONE);
+        } else {
+            thumbnailLoader.cancel(holder.thumbnailView);
+            holder.thumbnailView.setVisibility(View.GONE);
+        }
+
+        // Set the title of the news, whose layout is usually ready by now. If there is no title,
+        // hide the title view.
         String title = currentNews.getTitle();
         if (!title.isEmpty()) {
-            titleView.setText(title);
-            titleView.setVisibility(View.VISIBLE);
-        } else titleView.setVisibility(View.GONE);
+            holder.titleView.setTitle(title, titleLayouts);
+            holder.titleView.setVisibility(View.VISIBLE);
+        } else holder.titleView.setVisibility(View.GONE);
 
         // Set the section of the news. If there is no section, hide the section view.
         String section = currentNews.getSection();
         if (!section.isEmpty()) {
-            sectionView.setText(section);
-            sectionView.setVisibility(View.VISIBLE);
-            sectionTitleView.setVisibility(View.VISIBLE);
+            holder.sectionView.setText(section);
+            holder.sectionView.setVisibility(View.VISIBLE);
+            holder.sectionTitleView.setVisibility(View.VISIBLE);
         } else {
-            sectionView.setVisibility(View.GONE);
-            sectionTitleView.setVisibility(View.GONE);
+            holder.sectionView.setVisibility(View.GONE);
+            holder.sectionTitleView.setVisibility(View.GONE);
         }
 
         // Set the date of the news. If there is no date, hide the date view.
-        String date = currentNews.getDate();
-        if (!date.isEmpty()) {
-            dateView.setText(date);
-            dateView.setVisibility(View.VISIBLE);
-            dateTitleView.setVisibility(View.VISIBLE);
+        if (currentNews.getPublishedAt() != News.UNKNOWN_DATE) {
+            holder.dateView.setText(currentNews.getDate());
+            holder.dateView.setVisibility(View.VISIBLE);
+            holder.dateTitleView.setVisibility(View.VISIBLE);
         } else {
-            dateView.setVisibility(View.GONE);
-            dateTitleView.setVisibility(View.GONE);
+            holder.dateView.setVisibility(View.GONE);
+            holder.dateTitleView.setVisibility(View.GONE);
         }
 
         // Set the author of the news. If there is no author, hide the author view.
-        String author = currentNews.getAuthors();
-        if (!author.isEmpty()) {
-            authorView.setText(author);
-            if (author.contains(","))
-                authorTitleView.setText(listItemView.getResources().getString(R.string.news_authors));
-            else
-                authorTitleView.setText(listItemView.getResources().getString(R.string.news_author));
-            authorView.setVisibility(View.VISIBLE);
-            authorTitleView.setVisibility(View.VISIBLE);
+        int authorCount = currentNews.getAuthorCount();
+        if (authorCount > 0) {
+            holder.authorView.setText(currentNews.getAuthors());
+            holder.authorTitleView.setText(authorCount > 1 ? authorsLabel : authorLabel);
+            holder.authorView.setVisibility(View.VISIBLE);
+            holder.authorTitleView.setVisibility(View.VISIBLE);
         } else {
-            authorView.setVisibility(View.GONE);
-            authorTitleView.setVisibility(View.GONE);
+            holder.authorView.setVisibility(View.GONE);
+            holder.authorTitleView.setVisibility(View.GONE);
         }
 
-        // Return the list item view that is now showing the appropriate data.
-        return listItemView;
+        Metrics.bind.record(Metrics.elapsedMicros(start));
+    }
+
+    @Override
+    public void onViewRecycled(NewsViewHolder holder) {
+        // The row will show another news: its thumbnail is no longer needed.
+        thumbnailLoader.cancel(holder.thumbnailView);
+    }
+
+    /**
+     * Checks if the new list of news starts with every news of the old one, so only the news after
+     * them need to be inserted.
+     *
+     * @param oldNews is the list of news currently shown.
+     * @param newNews is the new list of news.
+     * @return true if the old list is a non-empty prefix of the new one, false otherwise.
+     */
+    static boolean isContinuation(List<News> oldNews, List<News> newNews) {
+        int count = oldNews.size();
+        if (count == 0 || newNews.size() < count) return false;
+
+        // Every position is compared, as a sorted or merged list may keep both ends while a news
+        // is inserted or removed in between. A pass by identity is still far cheaper than a diff.
+        for (int i = count - 1; i >= 0; i--) {
+            if (newNews.get(i) != oldNews.get(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the given URL, used as the stable id of a news.
+     *
+     * @param url is the URL of the news.
+     * @return the stable id for the URL.
+     */
+    static long stableId(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Compares two lists of news: two news are the same item if they have the same URL, and they
+     * have the same contents if every field shown in the list item is equal.
+     */
+    private static class NewsDiffCallback extends DiffUtil.Callback {
+        private final List<News> oldNews;
+        private final List<News> newNews;
+
+        NewsDiffCallback(List<News> oldNews, List<News> newNews) {
+            this.oldNews = oldNews;
+            this.newNews = newNews;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldNews.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newNews.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldNews.get(oldItemPosition).getUrl().equals(newNews.get(newItemPosition).getUrl());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            News a = oldNews.get(oldItemPosition);
+            News b = newNews.get(newItemPosition);
+            return a == b || (a.getPublishedAt() == b.getPublishedAt()
+                    && a.getTitle().equals(b.getTitle())
+                    && a.getSection().equals(b.getSection())
+                    && a.getThumbnail().equals(b.getThumbnail())
+                    && Arrays.equals(a.getAuthorList(), b.getAuthorList()));
+        }
     }
 }
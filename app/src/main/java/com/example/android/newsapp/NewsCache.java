@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Disk-backed cache of parsed lists of {@link News}, keyed by the request URL. Every entry lives
+ * in its own file inside the cache directory, and the least recently used files are evicted when
+ * the total size of the cache exceeds its limit.
+ */
+class NewsCache {
+    private static final String LOG_TAG = NewsCache.class.getSimpleName();
+
+    // Name of the directory, inside the app cache directory, where entries are stored.
+    private static final String CACHE_DIRECTORY = "news";
+
+    // Default time during which a cached list is considered fresh: 15 minutes.
+    static final long DEFAULT_TTL_MILLIS = 15 * 60 * 1000;
+
+    // Default maximum size of the cache on disk: 1 MB.
+    static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    // Version of the file format. Files written with any other version are ignored.
+    private static final int FORMAT_VERSION = 4;
+
+    private static NewsCache instance;
+
+    private final File directory;   // Directory where the cache files are stored.
+    private final long ttlMillis;   // Time during which an entry is fresh.
+    private final long maxBytes;    // Maximum size of all the cache files together.
+
+    /**
+     * A list of {@link News} read from the cache, along with the time it was stored and the HTTP
+     * validators needed for revalidating it.
+     */
+    static class Entry {
+        final List<News> news;          // Cached list of news.
+        final String etag;              // "ETag" of the response, or null.
+        final String lastModified;      // "Last-Modified" date of the response, or null.
+        final long savedAt;             // Time when the list was stored, in milliseconds.
+        final boolean fresh;            // Whether the entry is still within its time to live.
+
+        Entry(List<News> news, String etag, String lastModified, long savedAt, boolean fresh) {
+            this.news = news;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.savedAt = savedAt;
+            this.fresh = fresh;
+        }
+    }
+
+    /**
+     * Constructs a new {@link NewsCache}.
+     *
+     * @param directory is the directory where the cache files are stored.
+     * @param ttlMillis is the time, in milliseconds, during which an entry is considered fresh.
+     * @param maxBytes  is the maximum size, in bytes, of the cache on disk.
+     */
+    NewsCache(File directory, long ttlMillis, long maxBytes) {
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache shared by the whole app, with the default time to live and size.
+     *
+     * @param context of the app.
+     * @return the shared {@link NewsCache}.
+     */
+    static synchronized NewsCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY);
+            instance = new NewsCache(directory, DEFAULT_TTL_MILLIS, DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Reads the list of news stored for the given URL.
+     *
+     * @param url is the request URL used as key.
+     * @return the cached {@link Entry}, or null if there's no valid entry for the URL.
+     */
+    synchronized Entry get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(url)) return null;
+            String etag = readNullableUTF(in);
+            String lastModified = readNullableUTF(in);
+            long savedAt = in.readLong();
+            long length = file.length();
+            int count = readCount(in, length);
+            List<News> news = new ArrayList<>(count);
+            NewsFieldParser parser = new NewsFieldParser();
+            for (int i = 0; i < count; i++) {
+                String title = in.readUTF();
+                String section = parser.internSection(in.readUTF());
+                String newsUrl = in.readUTF();
+                String thumbnail = in.readUTF();
+                String[] authors = new String[readCount(in, length)];
+                for (int j = 0; j < authors.length; j++) authors[j] = parser.internAuthor(in.readUTF());
+                news.add(new News(title, section, newsUrl, thumbnail, authors.length == 0 ? News.NO_AUTHORS : authors, in.readLong()));
+            }
+
+            // Mark the file as recently used, so it is the last one to be evicted.
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(news, etag, lastModified, savedAt, System.currentTimeMillis() - savedAt < ttlMillis);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached news.", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the given list of news for the given URL, replacing any previous entry, and evicts
+     * old entries if the cache has grown beyond its size limit.
+     *
+     * @param url          is the request URL used as key.
+     * @param news         is the list of news to be stored.
+     * @param etag         is the "ETag" of the response, or null.
+     * @param lastModified is the "Last-Modified" date of the response, or null.
+     */
+    synchronized void put(String url, List<News> news, String etag, String lastModified) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Unable to create the cache directory " + directory);
+            return;
+        }
+
+        // Write to a temporary file first, so a failure never leaves a half-written entry.
+        File file = fileFor(url);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(url);
+            writeNullableUTF(out, etag);
+            writeNullableUTF(out, lastModified);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(news.size());
+            for (News currentNews : news) {
+                out.writeUTF(currentNews.getTitle());
+                out.writeUTF(currentNews.getSection());
+                out.writeUTF(currentNews.getUrl());
+                out.writeUTF(currentNews.getThumbnail());
+                String[] authors = currentNews.getAuthorList();
+                out.writeInt(authors.length);
+                for (String author : authors) out.writeUTF(author);
+                out.writeLong(currentNews.getPublishedAt());
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) Log.e(LOG_TAG, "Unable to store the cached news.");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cached news.", e);
+        } finally {
+            closeQuietly(out);
+            if (tmp.exists()) tmp.delete();
+        }
+
+        trimToSize();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in its maximum size.
+     */
+    private void trimToSize() {
+        trimToSize(directory, maxBytes);
+    }
+
+    /**
+     * Deletes the least recently used files of a directory, by modification date, until the
+     * directory fits in the given size.
+     *
+     * @param directory is the directory to be trimmed.
+     * @param maxBytes  is the maximum size, in bytes, of all the files together.
+     */
+    static void trimToSize(File directory, long maxBytes) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        long size = 0;
+        for (File file : files) size += file.length();
+        if (size <= maxBytes) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && size > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) size -= length;
+        }
+    }
+
+    /**
+     * Returns the file where the entry for the given URL is stored, named after a hash of the URL.
+     *
+     * @param url is the request URL used as key.
+     * @return the file for the entry.
+     */
+    private File fileFor(String url) {
+        return new File(directory, fileNameFor(url));
+    }
+
+    /**
+     * Returns a file name for the given URL: the hexadecimal MD5 hash of the URL.
+     *
+     * @param url is the URL used as key.
+     * @return the file name for the URL.
+     */
+    static String fileNameFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is always available on Android, but fall back to the String hash just in case.
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    /**
+     * Writes a String that may be null.
+     *
+     * @param out   is the stream to write to.
+     * @param value is the String to be written, or null.
+     * @throws IOException
+     */
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    /**
+     * Reads a String written by {@link #writeNullableUTF(DataOutputStream, String)}.
+     *
+     * @param in is the stream to read from.
+     * @return the String read, or null.
+     * @throws IOException
+     */
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Reads a number of news or authors. Every news or author takes several bytes, so a count
+     * larger than the file is corrupt, and must not be used for allocating anything.
+     *
+     * @param in     is the stream to read from.
+     * @param length is the length of the file, in bytes.
+     * @return the count read.
+     * @throws IOException if the count is out of range.
+     */
+    private static int readCount(DataInputStream in, long length) throws IOException {
+        int value = in.readInt();
+        if (value < 0 || value > length) throw new IOException("Count out of range: " + value);
+        return value;
+    }
+
+    /**
+     * Closes the given stream, ignoring any exception.
+     *
+     * @param closeable is the stream to be closed, or null.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing else can be done here.
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Creates and upgrades the database of the {@link NewsStore}:
+ * <p>
+ * * articles: one row per news, unique by URL, indexed by publication date and section.
+ * * article_authors: the authors of every news, in order, indexed by author.
+ * * articles_fts: full-text index over the titles, kept in sync with triggers.
+ */
+class NewsDbHelper extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "news.db";
+    private static final int DATABASE_VERSION = 2;
+
+    // Tables and columns.
+    static final String TABLE_ARTICLES = "articles";
+    static final String TABLE_AUTHORS = "article_authors";
+    static final String TABLE_TITLES_FTS = "articles_fts";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_URL = "web_url";
+    static final String COLUMN_THUMBNAIL = "thumbnail";
+    static final String COLUMN_TITLE = "title";
+    static final String COLUMN_SECTION = "section";
+    static final String COLUMN_PUBLISHED_AT = "published_at";
+    static final String COLUMN_ARTICLE_ID = "article_id";
+    static final String COLUMN_POSITION = "position";
+    static final String COLUMN_AUTHOR = "author";
+
+    NewsDbHelper(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA foreign_keys = ON");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARTICLES + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_URL + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_TITLE + " TEXT NOT NULL, "
+                + COLUMN_SECTION + " TEXT NOT NULL, "
+                + COLUMN_PUBLISHED_AT + " INTEGER NOT NULL, "
+                + COLUMN_THUMBNAIL + " TEXT NOT NULL DEFAULT '')");
+        db.execSQL("CREATE INDEX articles_published_at ON " + TABLE_ARTICLES + " (" + COLUMN_PUBLISHED_AT + ")");
+        db.execSQL("CREATE INDEX articles_section ON " + TABLE_ARTICLES + " (" + COLUMN_SECTION + ", " + COLUMN_PUBLISHED_AT + ")");
+
+        db.execSQL("CREATE TABLE " + TABLE_AUTHORS + " ("
+                + COLUMN_ARTICLE_ID + " INTEGER NOT NULL REFERENCES " + TABLE_ARTICLES + " (" + COLUMN_ID + ") ON DELETE CASCADE, "
+                + COLUMN_POSITION + " INTEGER NOT NULL, "
+                + COLUMN_AUTHOR + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_ARTICLE_ID + ", " + COLUMN_POSITION + "))");
+        db.execSQL("CREATE INDEX article_authors_author ON " + TABLE_AUTHORS + " (" + COLUMN_AUTHOR + ")");
+
+        // External content full-text table: it indexes the titles without storing a second copy.
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_TITLES_FTS + " USING fts4(content=\"" + TABLE_ARTICLES + "\", " + COLUMN_TITLE + ")");
+        db.execSQL("CREATE TRIGGER articles_fts_insert AFTER INSERT ON " + TABLE_ARTICLES + " BEGIN "
+                + "INSERT INTO " + TABLE_TITLES_FTS + " (docid, " + COLUMN_TITLE + ") VALUES (new." + COLUMN_ID + ", new." + COLUMN_TITLE + "); END");
+        db.execSQL("CREATE TRIGGER articles_fts_before_update BEFORE UPDATE ON " + TABLE_ARTICLES + " BEGIN "
+                + "DELETE FROM " + TABLE_TITLES_FTS + " WHERE docid = old." + COLUMN_ID + "; END");
+        db.execSQL("CREATE TRIGGER articles_fts_after_update AFTER UPDATE ON " + TABLE_ARTICLES + " BEGIN "
+                + "INSERT INTO " + TABLE_TITLES_FTS + " (docid, " + COLUMN_TITLE + ") VALUES (new." + COLUMN_ID + ", new." + COLUMN_TITLE + "); END");
+        db.execSQL("CREATE TRIGGER articles_fts_delete BEFORE DELETE ON " + TABLE_ARTICLES + " BEGIN "
+                + "DELETE FROM " + TABLE_TITLES_FTS + " WHERE docid = old." + COLUMN_ID + "; END");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Version 2 adds the thumbnail of every news.
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_ARTICLES + " ADD COLUMN " + COLUMN_THUMBNAIL + " TEXT NOT NULL DEFAULT ''");
+        }
+    }
+}
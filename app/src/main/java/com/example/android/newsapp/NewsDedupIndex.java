@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the unique stories of a list of news, which tells whether a news repeats one already
+ * indexed:
+ * <p>
+ * * Exactly, when both have the same URL.
+ * * Nearly, when their titles are almost the same and they were published within a day of each
+ * other, as syndicated or slightly retitled copies of the same story are.
+ * <p>
+ * Near duplicates are found with MinHash: every title is reduced to a signature of
+ * {@link #SIGNATURE_SIZE} hashes of its 4-character shingles, whose fraction of equal hashes
+ * estimates the similarity of the titles. Signatures are split into bands, and only news sharing
+ * a whole band with the new one (locality-sensitive hashing) are compared, so adding a news costs
+ * the same however many news are indexed. Every table is made of primitive arrays.
+ * <p>
+ * News can be removed in the reverse order they were added, with {@link #truncate(int)}. An
+ * instance is not thread-safe.
+ */
+class NewsDedupIndex {
+    // Number of hashes of every signature, and how they are split into bands for finding
+    // candidates: a pair of titles with a similarity of 0.8 shares at least a band 98% of the
+    // time, and one with a similarity of 0.3, only 6% of the time.
+    static final int SIGNATURE_SIZE = 32;
+    private static final int BANDS = 8;
+    private static final int ROWS = SIGNATURE_SIZE / BANDS;
+
+    // Minimum estimated similarity of two titles of the same story.
+    private static final double SIMILARITY_THRESHOLD = 0.8;
+
+    // Maximum distance between the publication dates of two copies of the same story: one day.
+    private static final long MAX_DATE_DISTANCE_MILLIS = 24 * 60 * 60 * 1000;
+
+    // Titles shorter than this, once normalized, are too generic to be compared.
+    private static final int MIN_TITLE_LENGTH = 16;
+
+    // Length of the shingles of the titles.
+    private static final int SHINGLE_LENGTH = 4;
+
+    // Coefficients of the hash functions of the signatures: h(x) = (a * x + b) >>> 32.
+    private static final long[] MULTIPLIERS = new long[SIGNATURE_SIZE];
+    private static final long[] INCREMENTS = new long[SIGNATURE_SIZE];
+
+    static {
+        long state = 0x2545f4914f6cdd1dL;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            state += 0x9e3779b97f4a7c15L;
+            MULTIPLIERS[i] = mix(state) | 1;
+            state += 0x9e3779b97f4a7c15L;
+            INCREMENTS[i] = mix(state);
+        }
+    }
+
+    // Empty slot of the hash tables, and link to no entry.
+    private static final int NONE = -1;
+
+    private int size;                       // Number of news indexed.
+    private News[] news = new News[16];     // Indexed news, in the order they were added.
+    private long[] dates = new long[16];    // Publication date of every news.
+    private int[] signatures = new int[16 * SIGNATURE_SIZE];    // Signatures, or 0s for none.
+    private boolean[] signed = new boolean[16];                 // Whether a news has a signature.
+
+    // Hash tables of URLs and bands, as chains of entries starting at a head slot. Newer entries
+    // are always at the head of their chains, so the latest entry can be removed in constant time.
+    private int[] urlHeads = newTable(32);
+    private int[] urlNext = new int[16];
+    private int[] bandHeads = newTable(32 * BANDS);
+    private int[] bandNext = new int[16 * BANDS];
+
+    // Signature of the news being checked.
+    private final int[] signature = new int[SIGNATURE_SIZE];
+
+    /**
+     * Returns the number of news indexed.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Indexes a news, unless it repeats a news already indexed.
+     *
+     * @param candidate is the news to be added.
+     * @return true if the news has been added, false if it is a duplicate.
+     */
+    boolean add(News candidate) {
+        String url = candidate.getUrl();
+        int urlHash = spread(url.hashCode());
+        for (int entry = urlHeads[urlHash & (urlHeads.length - 1)]; entry != NONE; entry = urlNext[entry]) {
+            if (news[entry].getUrl().equals(url)) return false;
+        }
+
+        boolean hasSignature = computeSignature(candidate.getTitle(), signature);
+        if (hasSignature && findNearDuplicate(candidate.getPublishedAt()) != NONE) return false;
+
+        ensureCapacity(size + 1);
+        if ((size + 1) * 4 > urlHeads.length * 3) rehash(urlHeads.length * 2);
+        int entry = size++;
+        news[entry] = candidate;
+        dates[entry] = candidate.getPublishedAt();
+        signed[entry] = hasSignature;
+        System.arraycopy(signature, 0, signatures, entry * SIGNATURE_SIZE, SIGNATURE_SIZE);
+        link(entry);
+        return true;
+    }
+
+    /**
+     * Removes the latest news added, until only the given number of news remain.
+     *
+     * @param newSize is the number of news to keep.
+     */
+    void truncate(int newSize) {
+        while (size > newSize) {
+            int entry = --size;
+            urlHeads[urlSlot(entry)] = urlNext[entry];
+            if (signed[entry]) {
+                // In the reverse order they were linked, as bands may share a chain.
+                for (int band = BANDS - 1; band >= 0; band--) {
+                    bandHeads[bandSlot(entry, band)] = bandNext[entry * BANDS + band];
+                }
+            }
+            news[entry] = null;
+        }
+    }
+
+    /**
+     * Returns a list with the news of the given list that don't repeat any news indexed nor any
+     * previous news of the list, and indexes them.
+     *
+     * @param list is the list of news to be added.
+     * @return the news added, in the order of the list.
+     */
+    List<News> addAll(List<News> list) {
+        List<News> added = new ArrayList<>(list.size());
+        for (News current : list) {
+            if (add(current)) added.add(current);
+        }
+        return added;
+    }
+
+    /**
+     * Looks for an indexed news whose title is nearly the same as the one of {@link #signature},
+     * and which was published close to the given date.
+     *
+     * @param date is the publication date of the news being checked.
+     * @return the entry of the duplicate, or NONE if there is none.
+     */
+    private int findNearDuplicate(long date) {
+        for (int band = 0; band < BANDS; band++) {
+            int slot = slotOf(bandHash(signature, 0, band), band);
+            for (int link = bandHeads[slot]; link != NONE; link = bandNext[link]) {
+                int entry = link / BANDS;
+                if (link % BANDS == band && isNearDuplicate(entry, date)) return entry;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Checks whether an indexed news is a near duplicate of the news being checked.
+     */
+    private boolean isNearDuplicate(int entry, long date) {
+        if (date != News.UNKNOWN_DATE && dates[entry] != News.UNKNOWN_DATE
+                && Math.abs(date - dates[entry]) > MAX_DATE_DISTANCE_MILLIS) return false;
+        int offset = entry * SIGNATURE_SIZE;
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (signatures[offset + i] == signature[i]) equal++;
+        }
+        return equal >= SIMILARITY_THRESHOLD * SIGNATURE_SIZE;
+    }
+
+    /**
+     * Links a new entry at the head of its URL chain and of the chains of its bands.
+     */
+    private void link(int entry) {
+        int slot = urlSlot(entry);
+        urlNext[entry] = urlHeads[slot];
+        urlHeads[slot] = entry;
+        if (!signed[entry]) return;
+        for (int band = 0; band < BANDS; band++) {
+            slot = bandSlot(entry, band);
+            bandNext[entry * BANDS + band] = bandHeads[slot];
+            bandHeads[slot] = entry * BANDS + band;
+        }
+    }
+
+    /**
+     * Rebuilds the hash tables with a new size. Entries are linked again in the order they were
+     * added, so newer entries are still at the head of their chains.
+     */
+    private void rehash(int urlTableSize) {
+        urlHeads = newTable(urlTableSize);
+        bandHeads = newTable(urlTableSize * BANDS);
+        int count = size;
+        size = 0;
+        while (size < count) {
+            size++;
+            link(size - 1);
+        }
+    }
+
+    private int urlSlot(int entry) {
+        return spread(news[entry].getUrl().hashCode()) & (urlHeads.length - 1);
+    }
+
+    private int bandSlot(int entry, int band) {
+        return slotOf(bandHash(signatures, entry * SIGNATURE_SIZE, band), band);
+    }
+
+    private int slotOf(int bandHash, int band) {
+        return spread(bandHash + band * 0x9e3779b9) & (bandHeads.length - 1);
+    }
+
+    /**
+     * Hashes the rows of a band of a signature.
+     */
+    private static int bandHash(int[] signatures, int offset, int band) {
+        int hash = 1;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) hash = 31 * hash + signatures[offset + i];
+        return hash;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= news.length) return;
+        int newLength = Math.max(capacity, news.length * 2);
+        news = Arrays.copyOf(news, newLength);
+        dates = Arrays.copyOf(dates, newLength);
+        signed = Arrays.copyOf(signed, newLength);
+        signatures = Arrays.copyOf(signatures, newLength * SIGNATURE_SIZE);
+        urlNext = Arrays.copyOf(urlNext, newLength);
+        bandNext = Arrays.copyOf(bandNext, newLength * BANDS);
+    }
+
+    /**
+     * Computes the MinHash signature of a title: for every hash function, the minimum hash of the
+     * shingles of the title. Titles are compared in lower case, with any run of characters other
+     * than letters and digits taken as a single space.
+     *
+     * @param title     is the title of a news.
+     * @param signature is where the signature is written.
+     * @return false if the title is too short to have a meaningful signature.
+     */
+    static boolean computeSignature(String title, int[] signature) {
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        long shingle = 0;       // Latest characters of the normalized title, 16 bits each.
+        int length = 0;         // Length of the normalized title so far.
+        boolean space = true;   // Whether the latest normalized character is a space.
+        for (int i = 0; i <= title.length(); i++) {
+            char c;
+            if (i == title.length()) {
+                if (space) break;
+                c = ' ';
+            } else {
+                c = title.charAt(i);
+                if (Character.isLetterOrDigit(c)) c = Character.toLowerCase(c);
+                else if (space) continue;
+                else c = ' ';
+            }
+            space = c == ' ';
+            shingle = (shingle << 16) | c;
+            if (++length >= SHINGLE_LENGTH) addShingle(mix(shingle), signature);
+        }
+        return length >= MIN_TITLE_LENGTH;
+    }
+
+    /**
+     * Updates a signature with the hashes of a shingle.
+     */
+    private static void addShingle(long shingleHash, int[] signature) {
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            int hash = (int) ((MULTIPLIERS[i] * shingleHash + INCREMENTS[i]) >>> 32);
+            if (hash < signature[i]) signature[i] = hash;
+        }
+    }
+
+    /**
+     * Finalizer of SplitMix64, which spreads every bit of the input over the whole output.
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] newTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, NONE);
+        return table;
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stream of news for the list of the main screen, which delivers the list to its listener every
+ * time it grows or changes, instead of once at the end of the whole load:
+ * <p>
+ * * Cached news are delivered first, and then the news from the network.
+ * * While a response is being parsed, the news read so far are delivered every few news, so the
+ * first ones are shown before the whole response has been downloaded.
+ * * Updates are conflated: if the UI thread is busy, only the latest list is delivered when it
+ * gets to it, so a fast producer never floods it.
+ * * {@link #cancel()} interrupts the work in flight, so an abandoned feed stops using the CPU and
+ * the network.
+ * * When a request fails, the cached news, even if stale, are delivered along with the failure,
+ * so the list stays populated while the API is failing.
+ * * Repeated and syndicated stories, found by a {@link NewsDedupIndex}, are delivered only once,
+ * even when they come in different pages or from different queries.
+ * <p>
+ * With a single query, news are requested one page at a time by {@link #loadNextPage()}, and
+ * {@link #setQueries(List)} can change the query of the next pages, e.g. its page size. With
+ * several queries, they are all requested at once, and the merged list is delivered as every
+ * query completes.
+ * <p>
+ * A feed doesn't hold any reference to the activity but its listener, so it can be retained
+ * across configuration changes.
+ */
+class NewsFeed {
+    // Maximum number of requests performed at the same time.
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    // Pool of threads shared by every feed, for performing the requests.
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+
+    // Number of news parsed between two deliveries of a page being downloaded.
+    private static final int DELIVER_EVERY = 5;
+
+    /**
+     * Interface for receiving the news of the feed.
+     */
+    interface Listener {
+        /**
+         * Called on the UI thread every time the list of news changes.
+         *
+         * @param news    is every news loaded so far. It must not be modified.
+         * @param loading is whether more news are still being loaded.
+         * @param error   is the failure of the latest load, or null if it succeeded or is still
+         *                in progress.
+         */
+        void onNewsChanged(List<News> news, boolean loading, NewsFetchException error);
+    }
+
+    private List<NewsQuery> queries;    // Queries, for their first page.
+    private final NewsCache cache;      // Disk cache of previous responses.
+    private final NewsStore store;      // Local store of every news fetched, for searching.
+    private final Handler mainHandler;  // Handler for delivering the news on the UI thread.
+
+    // Index of the news of the pages loaded, only accessed by the thread loading a page, as pages
+    // are loaded one at a time.
+    private final NewsDedupIndex index = new NewsDedupIndex();
+
+    // State of the feed, only accessed on the UI thread.
+    private Listener listener;                          // Listener of the feed, or null.
+    private List<News> news;                            // Latest list delivered, or null.
+    private boolean loading;                            // Whether news are being loaded.
+    private NewsFetchException error;                   // Failure of the latest load, or null.
+    private boolean cancelled;                          // Whether the feed has been cancelled.
+    private int page;                                   // Latest page requested, starting from 1.
+    private int overlap;                                // News of the next page already loaded.
+    private List<NewsQuery> nextQueries;                // Queries for the next pages, or null.
+    private final List<Future<?>> tasks = new ArrayList<>();   // Work submitted to the pool.
+
+    // Whether there are pages left to load, as found by the latest page loaded.
+    private volatile boolean hasMorePages = true;
+
+    // Latest list produced but not delivered yet, and whether its delivery is already posted.
+    private final AtomicReference<Update> pendingUpdate = new AtomicReference<>();
+    private final AtomicBoolean deliveryPosted = new AtomicBoolean();
+
+    /**
+     * A list of news produced on a background thread, waiting to be delivered.
+     */
+    private static class Update {
+        final List<News> news;          // Every news loaded so far.
+        final boolean complete;         // Whether the current load has finished.
+        final NewsFetchException error; // Failure of the current load, or null.
+
+        Update(List<News> news, boolean complete, NewsFetchException error) {
+            this.news = news;
+            this.complete = complete;
+            this.error = error;
+        }
+    }
+
+    // Delivers the latest pending update on the UI thread.
+    private final Runnable deliverUpdate = new Runnable() {
+        @Override
+        public void run() {
+            deliveryPosted.set(false);
+            Update update = pendingUpdate.getAndSet(null);
+            if (update == null || cancelled) return;
+            news = update.news;
+            loading = !update.complete;
+            error = update.error;
+            if (listener != null) listener.onNewsChanged(news, loading, error);
+        }
+    };
+
+    /**
+     * Constructs a new {@link NewsFeed}.
+     *
+     * @param context of the app.
+     * @param queries are the queries, for their first page.
+     */
+    NewsFeed(Context context, List<NewsQuery> queries) {
+        this.queries = queries;
+        this.cache = NewsCache.getInstance(context);
+        this.store = NewsStore.getInstance(context);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Sets the listener of the feed, which receives the news already loaded, if any, right away.
+     * Must be called on the UI thread.
+     *
+     * @param listener is the new listener, or null for detaching the current one.
+     */
+    void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null && news != null) listener.onNewsChanged(news, loading, error);
+    }
+
+    /**
+     * Starts loading the news, unless they are already being loaded. Must be called on the UI
+     * thread.
+     */
+    void start() {
+        if (page > 0 || cancelled || queries.isEmpty()) return;
+        page = 1;
+        loading = true;
+        if (queries.size() == 1) submitPage(queries.get(0), 0, Collections.<News>emptyList());
+        else submitQueries();
+    }
+
+    /**
+     * Starts loading the next page of news, unless a page is already being loaded or there are no
+     * more pages. The delivered lists will contain the news of the new page appended to the news
+     * already loaded. Must be called on the UI thread.
+     */
+    void loadNextPage() {
+        if (loading || cancelled || !hasMorePages || news == null || queries.size() != 1) return;
+        if (nextQueries != null) switchQueries();
+        loading = true;
+        submitPage(queries.get(0).forPage(++page), overlap, news);
+        overlap = 0;
+    }
+
+    /**
+     * Makes the next pages be requested with the given query, e.g. with another page size or
+     * other fields for a new connection, keeping the news already loaded. If a page is being
+     * loaded, the query changes once it has been loaded. With several queries, every news is
+     * requested at once, so new queries only apply to a new feed. Must be called on the UI thread.
+     *
+     * @param newQueries are the new queries, for their first page, with the same search terms.
+     */
+    void setQueries(List<NewsQuery> newQueries) {
+        if (cancelled || queries.size() != 1 || newQueries.size() != 1 || newQueries.equals(queries)) return;
+        nextQueries = newQueries;
+        if (!loading) switchQueries();
+    }
+
+    /**
+     * Switches to the queries given to {@link #setQueries(List)}. The page numbers of the API
+     * depend on the page size, so the next page becomes the first one, at the new size, that is
+     * not completely loaded, and the news it shares with the pages loaded are skipped.
+     */
+    private void switchQueries() {
+        int loaded = page * queries.get(0).getPageSize() + overlap;
+        int pageSize = nextQueries.get(0).getPageSize();
+        page = loaded / pageSize;
+        overlap = loaded % pageSize;
+        queries = nextQueries;
+        nextQueries = null;
+    }
+
+    /**
+     * Takes a snapshot of the news delivered so far, for restoring them in a later feed with the
+     * same queries. A page still being loaded is left to be loaded again. Must be called on the UI
+     * thread.
+     *
+     * @return the snapshot, or null if no page has been completely loaded yet.
+     */
+    NewsSnapshot snapshot() {
+        int completePages = loading ? page - 1 : page;
+        if (news == null || completePages < 1) return null;
+        return new NewsSnapshot(getKey(), news, completePages, loading || hasMorePages, System.currentTimeMillis());
+    }
+
+    /**
+     * Makes the feed start from the news of a snapshot, instead of loading them again, if the
+     * snapshot was taken from a feed with the same queries and is not older than the cache time
+     * to live. Must be called on the UI thread, before {@link #start()}.
+     *
+     * @param snapshot is the snapshot to be restored.
+     * @return true if the snapshot has been restored.
+     */
+    boolean restore(NewsSnapshot snapshot) {
+        if (page > 0 || !snapshot.key.equals(getKey())
+                || System.currentTimeMillis() - snapshot.savedAt >= NewsCache.DEFAULT_TTL_MILLIS) return false;
+        news = snapshot.news;
+        page = snapshot.page;
+        hasMorePages = snapshot.hasMorePages;
+        index.addAll(news);
+        return true;
+    }
+
+    /**
+     * Returns a key identifying the queries of the feed.
+     */
+    private String getKey() {
+        StringBuilder key = new StringBuilder();
+        for (NewsQuery query : queries) key.append(query.toUrl()).append('\n');
+        return key.toString();
+    }
+
+    /**
+     * Stops the work in flight and any further delivery. A cancelled feed can't be started again.
+     * Must be called on the UI thread.
+     */
+    void cancel() {
+        cancelled = true;
+        listener = null;
+        for (Future<?> task : tasks) task.cancel(true);
+        tasks.clear();
+    }
+
+    /**
+     * Submits the loading of a single page of news of the only query.
+     *
+     * @param query    is the query for the page to be loaded.
+     * @param skip     is the number of news at the start of the page already loaded.
+     * @param previous are the news of the previous pages.
+     */
+    private void submitPage(final NewsQuery query, final int skip, final List<News> previous) {
+        pruneTasks();
+        tasks.add(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                loadPage(query, skip, previous);
+            }
+        }));
+    }
+
+    /**
+     * Submits the loading of every query at once. The merged list is delivered every time a query
+     * completes, and as soon as a stale cached list of a query is read.
+     */
+    private void submitQueries() {
+        pruneTasks();
+        final List<List<News>> results = new ArrayList<>(Collections.<List<News>>nCopies(queries.size(), null));
+        final int[] remaining = {queries.size()};
+        final NewsFetchException[] failure = new NewsFetchException[1];
+        for (int i = 0; i < queries.size(); i++) {
+            final int position = i;
+            final String url = queries.get(i).toUrl();
+            tasks.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    List<News> result = null;
+                    NewsFetchException error = null;
+                    NewsCache.Entry cached = cache.get(url);
+                    if (cached != null && cached.fresh) {
+                        Metrics.cacheHits.incrementAndGet();
+                        result = cached.news;
+                    } else {
+                        Metrics.cacheMisses.incrementAndGet();
+
+                        // A stale cached list is merged right away, while the network request
+                        // revalidates it.
+                        if (cached != null) {
+                            synchronized (results) {
+                                results.set(position, cached.news);
+                                publish(mergeNews(results), false, null);
+                            }
+                        }
+                        try {
+                            QueryUtils.NewsResponse response =
+                                    NewsRequests.fetch(url, QueryUtils.ParseMode.STREAMING, cached, null);
+                            if (response != null && response.news != null) {
+                                if (response.notModified) Metrics.cacheRevalidations.incrementAndGet();
+
+                                // Storing the list again, even when it was not modified, restarts
+                                // its time to live.
+                                cache.put(url, response.news, response.etag, response.lastModified);
+                                if (!response.notModified) store.upsert(response.news);
+                                result = response.news;
+                            }
+                        } catch (NewsFetchException e) {
+                            error = e;
+                        }
+                        if (Thread.currentThread().isInterrupted()) return;
+
+                        // If the request fails, keep the cached list, however old it is.
+                        if (result == null && cached != null) result = cached.news;
+                    }
+
+                    // Merging and publishing under the same lock keeps the updates in order, so
+                    // the last one is always the complete list. The failure of any query is
+                    // reported along with the news of the others.
+                    synchronized (results) {
+                        results.set(position, result);
+                        if (error != null) failure[0] = error;
+                        boolean complete = --remaining[0] == 0;
+                        if (complete) hasMorePages = false;
+                        publish(mergeNews(results), complete, complete ? failure[0] : null);
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * Forgets the work already finished.
+     */
+    private void pruneTasks() {
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            if (tasks.get(i).isDone()) tasks.remove(i);
+        }
+    }
+
+    /**
+     * Loads a single page of news, from the cache or from the network, publishing the news as
+     * they are available. This is on a background thread.
+     *
+     * @param query    is the query for the page to be loaded.
+     * @param skip     is the number of news at the start of the page already loaded.
+     * @param previous are the news of the previous pages, to which the page is appended.
+     */
+    private void loadPage(NewsQuery query, final int skip, final List<News> previous) {
+        String pageUrl = query.toUrl();
+
+        // The index must only hold the news of the previous pages, which are the first ones added.
+        index.truncate(previous.size());
+
+        // A fresh cached list saves the network request altogether.
+        NewsCache.Entry cached = cache.get(pageUrl);
+        if (cached != null && cached.fresh) {
+            Metrics.cacheHits.incrementAndGet();
+            finishPage(previous, cached.news, null, skip, query.getPageSize(), null);
+            return;
+        }
+        Metrics.cacheMisses.incrementAndGet();
+
+        // A stale cached first page is shown right away, while the network request revalidates
+        // it. Otherwise, the news are shown as they are parsed, skipping the duplicates.
+        final boolean showingCached = cached != null && previous.isEmpty();
+        if (showingCached) publish(new NewsDedupIndex().addAll(cached.news), false, null);
+        final List<News> parsed = new ArrayList<>();
+        final int[] received = {0};
+        QueryUtils.NewsListener newsListener = new QueryUtils.NewsListener() {
+            @Override
+            public void onNewsParsed(News news) throws IOException {
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException("The news feed has been cancelled");
+                if (showingCached) return;
+                if (++received[0] <= skip) return;
+                if (!index.add(news)) return;
+                parsed.add(news);
+                if (parsed.size() == 1 || parsed.size() % DELIVER_EVERY == 0)
+                    publish(concat(previous, parsed), false, null);
+            }
+        };
+
+        // Perform the network request, parse the response, and extract a list of news. A cached
+        // list is sent for revalidation, so it doesn't have to be downloaded again if it is still
+        // valid. A request already in flight for the same page is shared instead of repeated. If
+        // the request fails, keep showing the cached list, if any, however old it is.
+        QueryUtils.NewsResponse response;
+        NewsFetchException error = null;
+        try {
+            response = NewsRequests.fetch(pageUrl, QueryUtils.ParseMode.STREAMING, cached, newsListener);
+        } catch (NewsFetchException e) {
+            response = null;
+            error = e;
+        }
+        if (Thread.currentThread().isInterrupted()) return;
+        List<News> pageNews;
+        List<News> parsedNews = null;
+        if (response == null || response.news == null) {
+            pageNews = cached != null ? cached.news : null;
+        } else {
+            if (response.notModified) Metrics.cacheRevalidations.incrementAndGet();
+
+            // Storing the list again, even when it was not modified, restarts its time to live.
+            cache.put(pageUrl, response.news, response.etag, response.lastModified);
+            if (!response.notModified) store.upsert(response.news);
+            pageNews = response.news;
+
+            // News parsed from this very response have already been indexed.
+            if (!showingCached && received[0] == pageNews.size()) parsedNews = parsed;
+        }
+        finishPage(previous, pageNews, parsedNews, skip, query.getPageSize(), error);
+    }
+
+    /**
+     * Publishes the complete list of news once a page has been loaded, without the news that
+     * repeat a previous one.
+     *
+     * @param previous   are the news of the previous pages.
+     * @param pageNews   are the news of the page, or null if it could not be loaded.
+     * @param parsedNews are the news of the page already indexed, or null if they are not.
+     * @param skip       is the number of news at the start of the page already loaded.
+     * @param pageSize   is the number of news requested for the page.
+     * @param error      is the failure of the request for the page, or null.
+     */
+    private void finishPage(List<News> previous, List<News> pageNews, List<News> parsedNews, int skip,
+                            int pageSize, NewsFetchException error) {
+        if (parsedNews == null) index.truncate(previous.size());
+
+        // If the page could not be loaded, or only from the cache after a failure, stop paging. A
+        // page shorter than requested is the last one, however many of its news are duplicates.
+        if (pageNews == null) {
+            hasMorePages = false;
+            publish(previous, true, error);
+            return;
+        }
+        hasMorePages = error == null && pageNews.size() >= pageSize;
+        int start = Math.min(skip, pageNews.size());
+        if (parsedNews == null) parsedNews = index.addAll(pageNews.subList(start, pageNews.size()));
+
+        // The page is committed to the index, so its duplicates are counted once, here.
+        Metrics.newsCollapsed.addAndGet(pageNews.size() - start - parsedNews.size());
+        publish(concat(previous, parsedNews), true, error);
+    }
+
+    /**
+     * Makes the given list of news the next one to be delivered, replacing any list not delivered
+     * yet. A delivery is posted to the UI thread only if there's none pending.
+     *
+     * @param news     is every news loaded so far.
+     * @param complete is whether the current load has finished.
+     * @param error    is the failure of the current load, or null.
+     */
+    private void publish(List<News> news, boolean complete, NewsFetchException error) {
+        pendingUpdate.set(new Update(news, complete, error));
+        if (deliveryPosted.compareAndSet(false, true)) mainHandler.post(deliverUpdate);
+    }
+
+    /**
+     * Returns a new list with the news of both lists.
+     */
+    private static List<News> concat(List<News> first, List<News> second) {
+        List<News> result = new ArrayList<>(first.size() + second.size());
+        result.addAll(first);
+        result.addAll(second);
+        return result;
+    }
+
+    /**
+     * Merges several lists of news into a single one, sorted from the newest to the oldest news.
+     * News found in more than one list (with the same URL), and copies of the same story, appear
+     * only once, as their newest copy.
+     *
+     * @param lists are the lists of news to be merged, or null for the lists not loaded.
+     * @return the merged list of news.
+     */
+    static List<News> mergeNews(List<List<News>> lists) {
+        List<News> merged = new ArrayList<>();
+        for (List<News> list : lists) {
+            if (list != null) merged.addAll(list);
+        }
+        Collections.sort(merged, new Comparator<News>() {
+            @Override
+            public int compare(News a, News b) {
+                return Long.compare(b.getPublishedAt(), a.getPublishedAt());
+            }
+        });
+        return new NewsDedupIndex().addAll(merged);
+    }
+}
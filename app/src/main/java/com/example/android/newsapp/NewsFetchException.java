@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.io.IOException;
+
+/**
+ * Failure of a request to the news API, typed by its cause, so it can be retried or reported to
+ * the user accordingly instead of being shown as an empty list of news.
+ */
+class NewsFetchException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Causes of a failed request.
+     */
+    enum Kind {
+        // The server could not be reached, or the connection failed or timed out.
+        NETWORK,
+        // The server rejected the request because too many were made ("429 Too Many Requests").
+        RATE_LIMITED,
+        // The server failed to handle the request (a "5xx" response).
+        SERVER_ERROR,
+        // The request itself is wrong, e.g. a "4xx" response other than 429, and repeating it
+        // doesn't help.
+        INVALID_REQUEST,
+        // The response could not be parsed.
+        MALFORMED_RESPONSE,
+        // The request was not even performed, because the API has been failing lately.
+        CIRCUIT_OPEN
+    }
+
+    // Value of {@link #retryAfterMillis} when the server didn't say when to retry.
+    static final long NO_RETRY_AFTER = -1;
+
+    final Kind kind;                // Cause of the failure.
+    final int code;                 // HTTP status code of the response, or 0 if there was none.
+    final long retryAfterMillis;    // Time to wait before retrying, or NO_RETRY_AFTER.
+
+    /**
+     * Constructs a new {@link NewsFetchException}.
+     *
+     * @param kind             is the cause of the failure.
+     * @param message          is the detail message.
+     * @param code             is the HTTP status code of the response, or 0 if there was none.
+     * @param retryAfterMillis is the time to wait before retrying, or NO_RETRY_AFTER.
+     * @param cause            is the exception that caused the failure, or null.
+     */
+    NewsFetchException(Kind kind, String message, int code, long retryAfterMillis, Throwable cause) {
+        super(message, cause);
+        this.kind = kind;
+        this.code = code;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Constructs a new {@link NewsFetchException} without any HTTP response.
+     *
+     * @param kind    is the cause of the failure.
+     * @param message is the detail message.
+     * @param cause   is the exception that caused the failure, or null.
+     */
+    NewsFetchException(Kind kind, String message, Throwable cause) {
+        this(kind, message, 0, NO_RETRY_AFTER, cause);
+    }
+
+    /**
+     * Builds the exception for an unsuccessful HTTP response.
+     *
+     * @param code             is the HTTP status code of the response.
+     * @param retryAfterMillis is the time to wait before retrying, as given by the "Retry-After"
+     *                         header, or NO_RETRY_AFTER.
+     * @return the {@link NewsFetchException} for the response.
+     */
+    static NewsFetchException forResponse(int code, long retryAfterMillis) {
+        Kind kind;
+        if (code == 429) kind = Kind.RATE_LIMITED;
+        else if (code == 408) kind = Kind.NETWORK;
+        else if (code >= 500) kind = Kind.SERVER_ERROR;
+        else kind = Kind.INVALID_REQUEST;
+        return new NewsFetchException(kind, "Error response code: " + code, code, retryAfterMillis, null);
+    }
+
+    /**
+     * Returns whether the same request may succeed if it is performed again later.
+     */
+    boolean isTransient() {
+        return kind == Kind.NETWORK || kind == Kind.RATE_LIMITED || kind == Kind.SERVER_ERROR;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the raw values of the Guardian API into the fields of every {@link News}. Values are
+ * scanned one character at a time and written into buffers that are reused from one news to the
+ * next, so parsing a whole page doesn't create any intermediate String. {@code FieldParserBenchmark},
+ * in the benchmark module, measures the bytes allocated per article against the split-based
+ * parsing this replaced.
+ * <p>
+ * An instance is not thread-safe: every parse should use its own {@link NewsFieldParser}.
+ */
+class NewsFieldParser {
+    // Maximum number of author names remembered. Bylines repeat a lot across pages, so a small
+    // table covers nearly every author.
+    private static final int MAX_INTERNED_AUTHORS = 1024;
+
+    // Author names already parsed, by author id. Shared by every parser.
+    private static final ConcurrentHashMap<String, String> authorNames = new ConcurrentHashMap<>();
+
+    // Author names already seen, parsed or read from a cache. Shared by every parser.
+    private static final ConcurrentHashMap<String, String> internedAuthors = new ConcurrentHashMap<>();
+
+    // Section names already seen. Shared by every parser.
+    private static final ConcurrentHashMap<String, String> sectionNames = new ConcurrentHashMap<>();
+
+    private String[] authors = new String[4];   // Authors of the current news.
+    private int authorCount;                    // Number of authors of the current news.
+    private final StringBuilder scratch = new StringBuilder();  // Buffer for a single value.
+    private final int[] dateFields = new int[6];    // Year, month, day, hours, minutes, seconds.
+
+    /**
+     * Starts the list of authors of a new news.
+     */
+    void beginAuthors() {
+        authorCount = 0;
+    }
+
+    /**
+     * Adds an author to the list of authors of the current news.
+     *
+     * @param authorId is the id of the author reference, in the format
+     *                 "author/string1-string2-...".
+     */
+    void addAuthor(String authorId) {
+        String author = parseAuthor(authorId);
+        if (author.isEmpty()) return;
+        if (authorCount == authors.length) authors = Arrays.copyOf(authors, authorCount * 2);
+        authors[authorCount++] = author;
+    }
+
+    /**
+     * Returns the list of authors of the current news.
+     *
+     * @return the authors added since {@link #beginAuthors()}.
+     */
+    String[] endAuthors() {
+        return authorCount == 0 ? News.NO_AUTHORS : Arrays.copyOf(authors, authorCount);
+    }
+
+    /**
+     * Returns the shared instance of the given section name, so every news of the same section
+     * references the same String.
+     *
+     * @param sectionName is the section name read from the JSON document.
+     * @return the shared section name.
+     */
+    String internSection(String sectionName) {
+        String previous = sectionNames.putIfAbsent(sectionName, sectionName);
+        return previous != null ? previous : sectionName;
+    }
+
+    /**
+     * Returns the shared instance of the given author name, so every news of the same author
+     * references the same String, whether it was parsed or read from a cache.
+     *
+     * @param author is the author name.
+     * @return the shared author name, or the given one if the table of names is full.
+     */
+    String internAuthor(String author) {
+        String previous = internedAuthors.get(author);
+        if (previous != null) return previous;
+        if (internedAuthors.size() >= MAX_INTERNED_AUTHORS) return author;
+        previous = internedAuthors.putIfAbsent(author, author);
+        return previous != null ? previous : author;
+    }
+
+    /**
+     * Takes the author from the JSON object, which comes in the format "author/string1-string2-..."
+     * and returns a String with the format "String1 String2 ...". The same instance is returned
+     * every time for the same author.
+     *
+     * @param authorId is the string from the JSON document which contains the author name.
+     * @return the author name capitalized and separated by blank characters.
+     */
+    String parseAuthor(String authorId) {
+        String author = authorNames.get(authorId);
+        if (author != null) return author;
+
+        // Skip everything up to the first "/" and stop at the next one, if any. Every "-" becomes a
+        // blank character, and the first letter of every word is capitalized.
+        scratch.setLength(0);
+        int start = authorId.indexOf('/') + 1;
+        boolean wordStart = true;
+        for (int i = start; i < authorId.length(); i++) {
+            char c = authorId.charAt(i);
+            if (c == '/') break;
+            if (c == '-') {
+                if (!wordStart) scratch.append(' ');
+                wordStart = true;
+            } else {
+                scratch.append(wordStart ? Character.toUpperCase(c) : c);
+                wordStart = false;
+            }
+        }
+        if (scratch.length() > 0 && scratch.charAt(scratch.length() - 1) == ' ')
+            scratch.setLength(scratch.length() - 1);
+
+        author = internAuthor(scratch.toString());
+        if (authorNames.size() < MAX_INTERNED_AUTHORS) {
+            String previous = authorNames.putIfAbsent(authorId, author);
+            if (previous != null) author = previous;
+        }
+        return author;
+    }
+
+    /**
+     * Takes the date from the JSON object, which comes in the format "YYYY-MM-DDTHH:MM:SSZ" (UTC),
+     * and returns it as a timestamp. Fractions of a second, if any, are ignored.
+     *
+     * @param webPublicationDate is the string from the JSON document which contains date and time.
+     * @return the number of milliseconds since epoch, or {@link News#UNKNOWN_DATE} if the date
+     * doesn't have the expected format.
+     */
+    long parseDateTime(String webPublicationDate) {
+        // Read the six numbers of the date, whatever the separators between them.
+        int[] fields = dateFields;
+        int field = 0;
+        int value = -1;
+        for (int i = 0; i < webPublicationDate.length() && field < fields.length; i++) {
+            char c = webPublicationDate.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+            } else if (value >= 0) {
+                fields[field++] = value;
+                value = -1;
+            }
+        }
+        if (value >= 0 && field < fields.length) fields[field++] = value;
+        if (field < fields.length) return News.UNKNOWN_DATE;
+
+        long days = daysFromCivil(fields[0], fields[1], fields[2]);
+        return ((days * 24 + fields[3]) * 60 + fields[4]) * 60000L + fields[5] * 1000L;
+    }
+
+    /**
+     * Returns the number of days since epoch of a civil date (proleptic Gregorian calendar).
+     *
+     * @param year  is the year.
+     * @param month is the month, from 1 to 12.
+     * @param day   is the day of the month, from 1 to 31.
+     * @return the number of days since 1970-01-01.
+     */
+    private static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = News.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters and sorts the loaded news on a background thread, through a {@link NewsIndex} that is
+ * rebuilt whenever the loaded news change. Results are published on the UI thread in growing
+ * prefixes: the first rows as soon as they are found, so the visible part of the list is shown
+ * right away, and then the rest, which the adapter inserts after them.
+ * <p>
+ * Only the latest request matters: any work for an earlier list or filter is abandoned, and its
+ * results are never published.
+ */
+class NewsFilterEngine {
+    // Thread for indexing and querying the news, off the main thread.
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Number of results of the first prefix published, about a screen of rows. Every following
+    // prefix doubles the previous one, so the whole list is copied a constant number of times.
+    static final int FIRST_RESULTS = 20;
+
+    /**
+     * Interface for receiving the results of the filter.
+     */
+    interface Listener {
+        /**
+         * Called on the UI thread with the results found so far for the latest filter.
+         *
+         * @param results  is the list of results, which starts with the previous one.
+         * @param complete is whether every result has been found.
+         */
+        void onResults(List<News> results, boolean complete);
+    }
+
+    private final Handler mainHandler;              // Handler for publishing the results.
+    private final AtomicInteger generation = new AtomicInteger();   // Latest request.
+    private Listener listener;                      // Listener of the results, or null.
+
+    // Latest news and filter requested. Only accessed on the UI thread.
+    private List<News> news = Collections.emptyList();
+    private NewsIndex.Filter filter;
+
+    // Index of the news, and the list it was built from. Only accessed on the engine thread.
+    private NewsIndex index;
+    private List<News> indexedNews;
+
+    // Latest index built, for reading its sections and authors on the UI thread.
+    private volatile NewsIndex latestIndex;
+
+    /**
+     * Constructs a new {@link NewsFilterEngine}.
+     *
+     * @param listener is the listener of the results.
+     */
+    NewsFilterEngine(Listener listener) {
+        this.listener = listener;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Replaces the news to be filtered, and filters them again with the current filter, if any.
+     * Must be called on the UI thread.
+     *
+     * @param newNews is the list of news. It must not be modified afterwards.
+     */
+    void setNews(List<News> newNews) {
+        news = newNews;
+        submit();
+    }
+
+    /**
+     * Replaces the filter, and filters the news with it. Must be called on the UI thread.
+     *
+     * @param newFilter is the new filter, or null for just keeping the index up to date. It must
+     *                  not be modified afterwards.
+     */
+    void setFilter(NewsIndex.Filter newFilter) {
+        filter = newFilter;
+        submit();
+    }
+
+    /**
+     * Returns the latest index built, or null if none has been built yet.
+     */
+    NewsIndex getIndex() {
+        return latestIndex;
+    }
+
+    /**
+     * Stops publishing results, for good. Must be called on the UI thread.
+     */
+    void release() {
+        listener = null;
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Starts indexing and filtering the latest news with the latest filter, abandoning any
+     * previous request.
+     */
+    private void submit() {
+        final int requestGeneration = generation.incrementAndGet();
+        final List<News> requestNews = news;
+        final NewsIndex.Filter requestFilter = filter;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (requestGeneration != generation.get()) return;
+                if (indexedNews != requestNews) {
+                    index = new NewsIndex(requestNews);
+                    indexedNews = requestNews;
+                    latestIndex = index;
+                }
+                if (requestFilter != null) query(index, requestFilter, requestGeneration);
+            }
+        });
+    }
+
+    /**
+     * Runs a query, publishing its results in growing prefixes, until it is done or a later
+     * request is made.
+     *
+     * @param index             is the index of the news.
+     * @param filter            is the filter.
+     * @param requestGeneration is the generation of the request.
+     */
+    private void query(NewsIndex index, NewsIndex.Filter filter, int requestGeneration) {
+        long start = System.nanoTime();
+        BitSet matches = index.match(filter);
+        int[] order = index.order(filter.order);
+        List<News> results = new ArrayList<>();
+        int nextPublish = FIRST_RESULTS;
+        for (int position : order) {
+            if (matches != null && !matches.get(position)) continue;
+            results.add(index.get(position));
+            if (results.size() == nextPublish) {
+                if (requestGeneration != generation.get()) return;
+                publish(new ArrayList<>(results), false, requestGeneration);
+                nextPublish *= 2;
+            }
+        }
+        Metrics.filter.record(Metrics.elapsedMicros(start));
+        publish(results, true, requestGeneration);
+    }
+
+    /**
+     * Publishes results on the UI thread, unless a later request has been made meanwhile.
+     */
+    private void publish(final List<News> results, final boolean complete, final int requestGeneration) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (requestGeneration == generation.get() && listener != null)
+                    listener.onResults(results, complete);
+            }
+        });
+    }
+}
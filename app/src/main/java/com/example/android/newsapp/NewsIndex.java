@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of a list of news, for filtering and sorting it without asking the server
+ * again. Everything a query needs is computed once, when the index is built:
+ * <p>
+ * * A bitset of the news of every section and of every author.
+ * * The positions of the news sorted by publication date, for finding a date range with two
+ * binary searches.
+ * * The sorted words of the titles, each with the bitset of the news containing it, so words are
+ * matched by prefix with a binary search.
+ * * The positions of the news in every {@link Order}.
+ * <p>
+ * A query is then a few bitset operations and a single pass over the positions in the requested
+ * order, which takes well under a millisecond for thousands of news. An index is immutable once
+ * built, so it can be queried from any thread.
+ */
+class NewsIndex {
+    /**
+     * Available orders of the results.
+     */
+    enum Order {
+        // Most recent news first, as the API returns them.
+        NEWEST,
+        // Oldest news first.
+        OLDEST,
+        // Alphabetical order of the titles.
+        TITLE,
+        // Alphabetical order of the sections, and most recent news first within a section.
+        SECTION
+    }
+
+    /**
+     * Filter and order for {@link #query(Filter)}. Every condition is optional.
+     */
+    static class Filter {
+        Set<String> sections = Collections.emptySet();  // Sections the news may belong to.
+        Set<String> authors = Collections.emptySet();   // Authors the news may be written by.
+        long fromDate = Long.MIN_VALUE;                 // Minimum publication date, in milliseconds.
+        long toDate = Long.MAX_VALUE;                   // Maximum publication date, in milliseconds.
+        String text;                                    // Words to be found in the title.
+        Order order = Order.NEWEST;                     // Order of the results.
+
+        /**
+         * Returns a copy of the filter, for changing some of its conditions. The sets of sections
+         * and authors are shared, as they are replaced, never modified.
+         */
+        Filter copy() {
+            Filter copy = new Filter();
+            copy.sections = sections;
+            copy.authors = authors;
+            copy.fromDate = fromDate;
+            copy.toDate = toDate;
+            copy.text = text;
+            copy.order = order;
+            return copy;
+        }
+
+        /**
+         * Checks whether the filter leaves out any news or changes the order of the list.
+         *
+         * @return true if every news is returned, newest first.
+         */
+        boolean isDefault() {
+            return sections.isEmpty() && authors.isEmpty() && fromDate == Long.MIN_VALUE
+                    && toDate == Long.MAX_VALUE && words(text).length == 0 && order == Order.NEWEST;
+        }
+    }
+
+    private final News[] news;                      // Indexed news, in the order they were given.
+    private final Map<String, BitSet> sections;     // News of every section.
+    private final Map<String, BitSet> authors;      // News of every author.
+    private final int[] byDate;                     // Positions of the news, oldest first.
+    private final long[] sortedDates;               // Publication dates, oldest first.
+    private final String[] words;                   // Words of the titles, sorted.
+    private final BitSet[] wordNews;                // News containing every word.
+    private final int[][] orders;                   // Positions of the news, in every order.
+
+    /**
+     * Builds the index of the given news.
+     *
+     * @param list is the list of news to be indexed.
+     */
+    NewsIndex(List<News> list) {
+        news = list.toArray(new News[list.size()]);
+        int count = news.length;
+
+        // Sections, authors and words of the titles.
+        sections = new HashMap<>();
+        authors = new HashMap<>();
+        Map<String, BitSet> wordMap = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            bitsetFor(sections, news[i].getSection()).set(i);
+            for (String author : news[i].getAuthorList()) bitsetFor(authors, author).set(i);
+            for (String word : words(news[i].getTitle())) bitsetFor(wordMap, word).set(i);
+        }
+        words = wordMap.keySet().toArray(new String[wordMap.size()]);
+        Arrays.sort(words);
+        wordNews = new BitSet[words.length];
+        for (int i = 0; i < words.length; i++) wordNews[i] = wordMap.get(words[i]);
+
+        // Publication dates. Among news published at the same time, the first in the list is the
+        // newest, so the order of the API is kept.
+        byDate = sortedPositions(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byTime = compareLongs(news[a].getPublishedAt(), news[b].getPublishedAt());
+                return byTime != 0 ? byTime : b - a;
+            }
+        });
+        sortedDates = new long[count];
+        for (int i = 0; i < count; i++) sortedDates[i] = news[byDate[i]].getPublishedAt();
+
+        orders = new int[Order.values().length][];
+        int[] newest = new int[count];
+        for (int i = 0; i < count; i++) newest[i] = byDate[count - 1 - i];
+        orders[Order.NEWEST.ordinal()] = newest;
+        orders[Order.OLDEST.ordinal()] = byDate;
+        final int[] rank = new int[count];  // Position of every news from the newest.
+        for (int i = 0; i < count; i++) rank[newest[i]] = i;
+        orders[Order.TITLE.ordinal()] = sortedPositions(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byTitle = String.CASE_INSENSITIVE_ORDER.compare(news[a].getTitle(), news[b].getTitle());
+                return byTitle != 0 ? byTitle : rank[a] - rank[b];
+            }
+        });
+        orders[Order.SECTION.ordinal()] = sortedPositions(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int bySection = String.CASE_INSENSITIVE_ORDER.compare(news[a].getSection(), news[b].getSection());
+                return bySection != 0 ? bySection : rank[a] - rank[b];
+            }
+        });
+    }
+
+    /**
+     * Returns the number of news indexed.
+     */
+    int size() {
+        return news.length;
+    }
+
+    /**
+     * Returns the news at the given position of the indexed list.
+     *
+     * @param position is the position of the news in the list the index was built from.
+     */
+    News get(int position) {
+        return news[position];
+    }
+
+    /**
+     * Returns the positions of the news in the given order. The array must not be modified.
+     *
+     * @param order is the order.
+     * @return the positions of every news in the indexed list, in that order.
+     */
+    int[] order(Order order) {
+        return orders[order.ordinal()];
+    }
+
+    /**
+     * Returns the sections of the indexed news, in alphabetical order.
+     */
+    List<String> getSections() {
+        return sortedKeys(sections);
+    }
+
+    /**
+     * Returns the authors of the indexed news, in alphabetical order.
+     */
+    List<String> getAuthors() {
+        return sortedKeys(authors);
+    }
+
+    /**
+     * Finds the news that match the given filter.
+     *
+     * @param filter is the filter and order of the results.
+     * @return the positions of the matching news in the indexed list, in the order of the filter.
+     */
+    int[] query(Filter filter) {
+        BitSet matches = match(filter);
+        int[] order = orders[filter.order.ordinal()];
+        if (matches == null) return order.clone();
+
+        int[] results = new int[matches.cardinality()];
+        int count = 0;
+        for (int position : order) {
+            if (matches.get(position)) results[count++] = position;
+        }
+        return results;
+    }
+
+    /**
+     * Finds the news that match every condition of the given filter.
+     *
+     * @param filter is the filter.
+     * @return the bitset of the matching news, or null if every news matches.
+     */
+    BitSet match(Filter filter) {
+        BitSet matches = null;
+        if (!filter.sections.isEmpty()) matches = and(matches, union(sections, filter.sections));
+        if (!filter.authors.isEmpty()) matches = and(matches, union(authors, filter.authors));
+        if (filter.fromDate != Long.MIN_VALUE || filter.toDate != Long.MAX_VALUE)
+            matches = and(matches, dateRange(filter.fromDate, filter.toDate));
+        for (String word : words(filter.text)) matches = and(matches, wordsStartingWith(word));
+        return matches;
+    }
+
+    /**
+     * Returns the news published within the given range, found with two binary searches over the
+     * sorted publication dates.
+     *
+     * @param fromDate is the minimum publication date, in milliseconds.
+     * @param toDate   is the maximum publication date, in milliseconds.
+     * @return the bitset of the news published within the range.
+     */
+    private BitSet dateRange(long fromDate, long toDate) {
+        BitSet range = new BitSet(news.length);
+        int end = upperBound(sortedDates, toDate);
+        for (int i = lowerBound(sortedDates, fromDate); i < end; i++) range.set(byDate[i]);
+        return range;
+    }
+
+    /**
+     * Returns the news whose titles contain a word starting with the given one. The words with
+     * that prefix are next to each other in the sorted words of the titles.
+     *
+     * @param prefix is the word typed by the user, normalized.
+     * @return the bitset of the matching news.
+     */
+    private BitSet wordsStartingWith(String prefix) {
+        BitSet result = new BitSet(news.length);
+        int index = Arrays.binarySearch(words, prefix);
+        if (index < 0) index = -index - 1;
+        for (; index < words.length && words[index].startsWith(prefix); index++) result.or(wordNews[index]);
+        return result;
+    }
+
+    /**
+     * Splits a text into lowercase words of letters and digits, as the titles are indexed.
+     *
+     * @param text is the text, or null.
+     * @return the words of the text.
+     */
+    static String[] words(String text) {
+        if (text == null) return new String[0];
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) word.append(Character.toLowerCase(c));
+            else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * Returns the positions of the news sorted with the given comparator of positions.
+     */
+    private int[] sortedPositions(Comparator<Integer> comparator) {
+        Integer[] positions = new Integer[news.length];
+        for (int i = 0; i < positions.length; i++) positions[i] = i;
+        Arrays.sort(positions, comparator);
+        int[] result = new int[positions.length];
+        for (int i = 0; i < result.length; i++) result[i] = positions[i];
+        return result;
+    }
+
+    /**
+     * Returns the union of the bitsets of the given keys.
+     */
+    private BitSet union(Map<String, BitSet> bitsets, Set<String> keys) {
+        BitSet result = new BitSet(news.length);
+        for (String key : keys) {
+            BitSet bitset = bitsets.get(key);
+            if (bitset != null) result.or(bitset);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intersection of two bitsets, reusing the first one.
+     *
+     * @param matches is the first bitset, or null for every news.
+     * @param bitset  is the second bitset.
+     */
+    private static BitSet and(BitSet matches, BitSet bitset) {
+        if (matches == null) return bitset;
+        matches.and(bitset);
+        return matches;
+    }
+
+    /**
+     * Returns the bitset of the given key, adding an empty one if there is none yet.
+     */
+    private static BitSet bitsetFor(Map<String, BitSet> bitsets, String key) {
+        BitSet bitset = bitsets.get(key);
+        if (bitset == null) {
+            bitset = new BitSet();
+            bitsets.put(key, bitset);
+        }
+        return bitset;
+    }
+
+    private static List<String> sortedKeys(Map<String, BitSet> bitsets) {
+        List<String> keys = new ArrayList<>(bitsets.keySet());
+        Collections.sort(keys, String.CASE_INSENSITIVE_ORDER);
+        return keys;
+    }
+
+    /**
+     * Returns the index of the first value not lower than the given one.
+     */
+    private static int lowerBound(long[] values, long value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first value greater than the given one.
+     */
+    private static int upperBound(long[] values, long value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A query to the search endpoint of the Guardian content API.
+ * <p>
+ * Besides the search terms and filters, a query holds its projection: the optional fields
+ * ("show-fields") and references ("show-references") included with every news. Requesting only
+ * what {@link News} uses keeps the responses small.
+ * <p>
+ * {@link #toUrl()} builds a canonical URL, with the parameters and their values always in the same
+ * order, so equal queries always produce equal URLs and can be used as cache keys.
+ */
+final class NewsQuery {
+    // Endpoint and key used when none is given. The base URL of the API is set at build time, so
+    // the app can be pointed to a local stand-in server.
+    static final String DEFAULT_BASE_URL = BuildConfig.GUARDIAN_BASE_URL + "/search";
+    static final String DEFAULT_API_KEY = "test";
+
+    // Limits of the page size accepted by the API.
+    static final int MIN_PAGE_SIZE = 1;
+    static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Order of the results.
+     */
+    enum Order {
+        NEWEST("newest"),
+        OLDEST("oldest"),
+        RELEVANCE("relevance");
+
+        final String value;     // Value of the "order-by" parameter.
+
+        Order(String value) {
+            this.value = value;
+        }
+    }
+
+    private final String baseUrl;                   // URL of the search endpoint.
+    private final String apiKey;                    // Key for the API.
+    private final String terms;                     // Search terms, or null.
+    private final SortedSet<String> ids;            // Ids of the only news to be returned.
+    private final SortedSet<String> sections;       // Sections the news must belong to.
+    private final String referenceType;             // Type of reference the news must have, or null.
+    private final SortedSet<String> showFields;     // Optional fields included with every news.
+    private final SortedSet<String> showReferences; // References included with every news.
+    private final Order order;                      // Order of the results, or null.
+    private final long fromDate;                    // Minimum publication date, or UNKNOWN_DATE.
+    private final long toDate;                      // Maximum publication date, or UNKNOWN_DATE.
+    private final int pageSize;                     // Number of news per page.
+    private final int page;                         // Page, starting from 1.
+
+    private NewsQuery(Builder builder) {
+        baseUrl = builder.baseUrl;
+        apiKey = builder.apiKey;
+        terms = builder.terms;
+        ids = Collections.unmodifiableSortedSet(new TreeSet<>(builder.ids));
+        sections = Collections.unmodifiableSortedSet(new TreeSet<>(builder.sections));
+        referenceType = builder.referenceType;
+        showFields = Collections.unmodifiableSortedSet(new TreeSet<>(builder.showFields));
+        showReferences = Collections.unmodifiableSortedSet(new TreeSet<>(builder.showReferences));
+        order = builder.order;
+        fromDate = builder.fromDate;
+        toDate = builder.toDate;
+        pageSize = builder.pageSize;
+        page = builder.page;
+    }
+
+    /**
+     * Getters.
+     */
+    String getTerms() {
+        return terms;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    int getPage() {
+        return page;
+    }
+
+    /**
+     * Returns a builder initialized with the values of this query, for building a similar one.
+     *
+     * @return the new {@link Builder}.
+     */
+    Builder buildUpon() {
+        Builder builder = new Builder();
+        builder.baseUrl = baseUrl;
+        builder.apiKey = apiKey;
+        builder.terms = terms;
+        builder.ids.addAll(ids);
+        builder.sections.addAll(sections);
+        builder.referenceType = referenceType;
+        builder.showFields.addAll(showFields);
+        builder.showReferences.addAll(showReferences);
+        builder.order = order;
+        builder.fromDate = fromDate;
+        builder.toDate = toDate;
+        builder.pageSize = pageSize;
+        builder.page = page;
+        return builder;
+    }
+
+    /**
+     * Returns the same query for another page of results.
+     *
+     * @param page is the page, starting from 1.
+     * @return the query for the page.
+     */
+    NewsQuery forPage(int page) {
+        return page == this.page ? this : buildUpon().page(page).build();
+    }
+
+    /**
+     * Builds the canonical URL of the query: parameters sorted by name, values of every parameter
+     * sorted, and parameters without value left out.
+     *
+     * @return the URL of the query.
+     */
+    String toUrl() {
+        Map<String, String> parameters = new TreeMap<>();
+        parameters.put("api-key", apiKey);
+        parameters.put("page", String.valueOf(page));
+        parameters.put("page-size", String.valueOf(pageSize));
+        if (terms != null) parameters.put("q", terms);
+        if (!ids.isEmpty()) parameters.put("ids", join(ids, ","));
+        if (!sections.isEmpty()) parameters.put("section", join(sections, "|"));
+        if (referenceType != null) parameters.put("reference-type", referenceType);
+        if (!showFields.isEmpty()) parameters.put("show-fields", join(showFields, ","));
+        if (!showReferences.isEmpty()) parameters.put("show-references", join(showReferences, ","));
+        if (order != null) parameters.put("order-by", order.value);
+        if (fromDate != News.UNKNOWN_DATE) parameters.put("from-date", formatIsoDate(fromDate));
+        if (toDate != News.UNKNOWN_DATE) parameters.put("to-date", formatIsoDate(toDate));
+
+        StringBuilder url = new StringBuilder(baseUrl);
+        char separator = baseUrl.indexOf('?') < 0 ? '?' : '&';
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            url.append(separator).append(parameter.getKey()).append('=').append(encode(parameter.getValue()));
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toUrl();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NewsQuery && toUrl().equals(((NewsQuery) other).toUrl());
+    }
+
+    @Override
+    public int hashCode() {
+        return toUrl().hashCode();
+    }
+
+    /**
+     * Formats a timestamp as an ISO 8601 date and time, as accepted by the date parameters.
+     *
+     * @param millis is the number of milliseconds since epoch.
+     * @return the date in the format "YYYY-MM-DDTHH:MM:SSZ".
+     */
+    static String formatIsoDate(long millis) {
+        return News.formatDate(millis).replace(' ', 'T') + "Z";
+    }
+
+    /**
+     * Joins the given values with a separator.
+     */
+    private static String join(SortedSet<String> values, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) joined.append(separator);
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Encodes a parameter value for the URL. Spaces are encoded as "%20", and commas, which
+     * separate multiple values and are valid in a query, are kept as they are for readability.
+     *
+     * @param value is the value to be encoded.
+     * @return the encoded value.
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20").replace("%2C", ",");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported.
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Builder of {@link NewsQuery} objects. Every value is optional: by default, a query asks the
+     * default endpoint for the first page of 10 news, without any filter nor projection.
+     */
+    static class Builder {
+        private String baseUrl = DEFAULT_BASE_URL;
+        private String apiKey = DEFAULT_API_KEY;
+        private String terms;
+        private final SortedSet<String> ids = new TreeSet<>();
+        private final SortedSet<String> sections = new TreeSet<>();
+        private String referenceType;
+        private final SortedSet<String> showFields = new TreeSet<>();
+        private final SortedSet<String> showReferences = new TreeSet<>();
+        private Order order;
+        private long fromDate = News.UNKNOWN_DATE;
+        private long toDate = News.UNKNOWN_DATE;
+        private int pageSize = 10;
+        private int page = 1;
+
+        Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        Builder apiKey(String apiKey) {
+            this.apiKey = apiKey;
+            return this;
+        }
+
+        Builder terms(String terms) {
+            this.terms = terms;
+            return this;
+        }
+
+        /**
+         * @param ids are the ids of the only news to be returned, which are the paths of their
+         *            URLs, as "world/2017/jul/01/title".
+         */
+        Builder ids(Collection<String> ids) {
+            this.ids.clear();
+            this.ids.addAll(ids);
+            return this;
+        }
+
+        Builder sections(String... sections) {
+            this.sections.clear();
+            this.sections.addAll(Arrays.asList(sections));
+            return this;
+        }
+
+        Builder referenceType(String referenceType) {
+            this.referenceType = referenceType;
+            return this;
+        }
+
+        Builder showFields(String... fields) {
+            showFields.clear();
+            showFields.addAll(Arrays.asList(fields));
+            return this;
+        }
+
+        Builder showReferences(String... references) {
+            showReferences.clear();
+            showReferences.addAll(Arrays.asList(references));
+            return this;
+        }
+
+        Builder order(Order order) {
+            this.order = order;
+            return this;
+        }
+
+        /**
+         * @param fromDate is the minimum publication date, in milliseconds since epoch, or
+         *                 {@link News#UNKNOWN_DATE} for no minimum.
+         */
+        Builder fromDate(long fromDate) {
+            this.fromDate = fromDate;
+            return this;
+        }
+
+        /**
+         * @param toDate is the maximum publication date, in milliseconds since epoch, or
+         *               {@link News#UNKNOWN_DATE} for no maximum.
+         */
+        Builder toDate(long toDate) {
+            this.toDate = toDate;
+            return this;
+        }
+
+        Builder pageSize(int pageSize) {
+            if (pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE)
+                throw new IllegalArgumentException("Page size out of range: " + pageSize);
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        Builder page(int page) {
+            if (page < 1) throw new IllegalArgumentException("Page out of range: " + page);
+            this.page = page;
+            return this;
+        }
+
+        NewsQuery build() {
+            return new NewsQuery(this);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shared layer in front of {@link QueryUtils} that avoids repeating the same request:
+ * <p>
+ * * Concurrent callers for the same URL attach to the request already in flight, instead of
+ * starting their own.
+ * * A completed response is served from memory for a short time, so a loader that is recreated
+ * right after a request (for instance, when the configuration changes) doesn't fetch and parse
+ * it again.
+ */
+final class NewsRequests {
+    private static final String LOG_TAG = NewsRequests.class.getSimpleName();
+
+    // Time during which a completed response is served from memory, in milliseconds.
+    static final long MEMORY_WINDOW_MILLIS = 10 * 1000;
+
+    // Requests in flight, by URL.
+    private static final ConcurrentHashMap<String, FutureTask<QueryUtils.NewsResponse>> inFlight =
+            new ConcurrentHashMap<>();
+
+    // Responses completed within the memory window, by URL.
+    private static final ConcurrentHashMap<String, Completed> completed = new ConcurrentHashMap<>();
+
+    /**
+     * A response along with the time it was completed.
+     */
+    private static class Completed {
+        final QueryUtils.NewsResponse response;
+        final long completedAt;     // Time of completion, in {@link SystemClock#elapsedRealtime()}.
+
+        Completed(QueryUtils.NewsResponse response, long completedAt) {
+            this.response = response;
+            this.completedAt = completedAt;
+        }
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsRequests} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name NewsRequests (and an object instance of NewsRequests is not
+     * needed).
+     */
+    private NewsRequests() {
+    }
+
+    /**
+     * Fetches the list of news of the given URL, sharing the request with any other caller asking
+     * for the same URL at the same time, or reusing a response completed moments ago.
+     *
+     * @param requestUrl is the URL to request.
+     * @param parseMode  is the strategy used for parsing the response.
+     * @param cached     is the cached entry to be revalidated, or null.
+     * @return the response, or null if the request was interrupted.
+     * @throws NewsFetchException if the request failed.
+     */
+    static QueryUtils.NewsResponse fetch(String requestUrl, QueryUtils.ParseMode parseMode,
+                                         NewsCache.Entry cached) throws NewsFetchException {
+        return fetch(requestUrl, parseMode, cached, null);
+    }
+
+    /**
+     * Fetches the list of news of the given URL as
+     * {@link #fetch(String, QueryUtils.ParseMode, NewsCache.Entry)} does, reporting every news to
+     * the given listener as soon as it is parsed. The listener is only used if this call performs
+     * the request: a caller attached to a request in flight just gets the whole response, or its
+     * failure, so a failing request is never repeated by every caller at once. If the caller that
+     * performs the request is interrupted instead, the attached callers perform it again.
+     *
+     * @param requestUrl is the URL to request.
+     * @param parseMode  is the strategy used for parsing the response.
+     * @param cached     is the cached entry to be revalidated, or null.
+     * @param listener   is the listener for every news parsed, or null.
+     * @return the response, or null if the request was interrupted.
+     * @throws NewsFetchException if the request failed.
+     */
+    static QueryUtils.NewsResponse fetch(final String requestUrl, final QueryUtils.ParseMode parseMode,
+                                         final NewsCache.Entry cached, final QueryUtils.NewsListener listener)
+            throws NewsFetchException {
+        while (true) {
+            long now = SystemClock.elapsedRealtime();
+            Completed recent = completed.get(requestUrl);
+            if (recent != null && now - recent.completedAt < MEMORY_WINDOW_MILLIS) {
+                Metrics.requestsShared.incrementAndGet();
+                return recent.response;
+            }
+
+            // Become the owner of the request, unless someone else is already performing it. The
+            // request leaves the map before its result is handed to anyone, so a caller retrying
+            // after an interrupted owner never attaches to the same request again.
+            FutureTask<QueryUtils.NewsResponse> task = new FutureTask<>(new Callable<QueryUtils.NewsResponse>() {
+                @Override
+                public QueryUtils.NewsResponse call() throws NewsFetchException {
+                    try {
+                        return QueryUtils.fetchNewsResponse(requestUrl, parseMode, cached, listener);
+                    } finally {
+                        // Only the owner runs this task, and its task stays mapped until now.
+                        inFlight.remove(requestUrl);
+                    }
+                }
+            });
+            FutureTask<QueryUtils.NewsResponse> current = inFlight.putIfAbsent(requestUrl, task);
+            if (current == null) {
+                // The request is performed on the thread of the owner.
+                Metrics.requestsPerformed.incrementAndGet();
+                task.run();
+                current = task;
+            } else {
+                Metrics.requestsShared.incrementAndGet();
+            }
+
+            try {
+                QueryUtils.NewsResponse response = current.get();
+                if (current == task) {
+                    if (response != null) remember(requestUrl, response);
+                    return response;
+                }
+                if (response != null) return response;
+
+                // The owner was interrupted, or aborted by its listener: that is no answer for
+                // this caller, which performs the request itself unless it was interrupted too.
+                if (Thread.currentThread().isInterrupted()) return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof NewsFetchException) throw (NewsFetchException) e.getCause();
+                Log.e(LOG_TAG, "Problem fetching the news of " + requestUrl, e.getCause());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Keeps a completed response in memory, and forgets the ones outside the memory window.
+     *
+     * @param requestUrl is the URL of the response.
+     * @param response   is the completed response.
+     */
+    private static void remember(String requestUrl, QueryUtils.NewsResponse response) {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Map.Entry<String, Completed>> iterator = completed.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue().completedAt >= MEMORY_WINDOW_MILLIS) iterator.remove();
+        }
+        completed.put(requestUrl, new Completed(response, now));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the news of the {@link NewsStore} whose titles contain the words typed by the user, narrowed
+ * and sorted by the filter of the list. No network request is made, so news can be searched
+ * offline.
+ */
+class NewsSearchLoader extends AsyncTaskLoader<List<News>> {
+    private static final String LOG_TAG = NewsSearchLoader.class.getSimpleName();
+
+    private final String text;              // Words to search for.
+    private final NewsIndex.Filter filter;  // Filter and order of the news found, or null.
+    private List<News> news;                // News found, once loaded.
+
+    /**
+     * Constructs a new {@link NewsSearchLoader}.
+     *
+     * @param context of the activity.
+     * @param text    is the text typed by the user.
+     * @param filter  is the filter and order of the news found, or null for every news, newest
+     *                first.
+     */
+    NewsSearchLoader(Context context, String text, NewsIndex.Filter filter) {
+        super(context);
+        this.text = text;
+        this.filter = filter;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (news != null) deliverResult(news);
+        else forceLoad();
+    }
+
+    @Override
+    public void deliverResult(List<News> data) {
+        news = data;
+        super.deliverResult(data);
+    }
+
+    /**
+     * This is on a background thread.
+     */
+    @Override
+    public List<News> loadInBackground() {
+        NewsStore.Filter storeFilter = new NewsStore.Filter();
+        storeFilter.text = text;
+        List<News> found;
+        try {
+            found = NewsStore.getInstance(getContext()).query(storeFilter);
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem searching the stored news.", e);
+            return null;
+        }
+
+        // The words have already been matched by the store, so only the rest of the filter is
+        // applied.
+        if (filter == null || filter.isDefault()) return found;
+        NewsIndex.Filter rest = filter.copy();
+        rest.text = null;
+        NewsIndex index = new NewsIndex(found);
+        int[] positions = index.query(rest);
+        List<News> results = new ArrayList<>(positions.length);
+        for (int position : positions) results.add(index.get(position));
+        return results;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot of the news shown in the list, saved in a compact binary file so the list can be
+ * restored in a few milliseconds after the process has been killed, instead of being requested
+ * and parsed again.
+ * <p>
+ * Every distinct String (titles, URLs, sections, authors...) is stored once, in a string table:
+ * the byte lengths of the Strings as varints, followed by their UTF-8 bytes. Every news is then a
+ * record of varint indexes into the table, and its publication date as the varint difference with
+ * the previous one. The whole file is read with a single channel read, and checked with a CRC32.
+ * <p>
+ * The file starts with a major and a minor version. Files with another major version are ignored.
+ * Minor versions may only add fields at the end of the header or of the records, which are
+ * prefixed with their length so older readers can skip what they don't know.
+ */
+class NewsSnapshot {
+    // First bytes of every snapshot: "NSNP".
+    private static final int MAGIC = 0x4e534e50;
+
+    // Versions of the format written.
+    private static final int MAJOR_VERSION = 1;
+    private static final int MINOR_VERSION = 0;
+
+    // Snapshots larger than this are not read: they can't have been written by this class.
+    private static final int MAX_FILE_BYTES = 16 * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    final String key;               // Identifies the queries of the feed the news come from.
+    final List<News> news;          // News of the list.
+    final int page;                 // Latest page loaded, starting from 1.
+    final boolean hasMorePages;     // Whether there were pages left to load.
+    final long savedAt;             // Time when the snapshot was taken, in milliseconds.
+
+    /**
+     * Constructs a new {@link NewsSnapshot}.
+     *
+     * @param key          identifies the queries of the feed the news come from.
+     * @param news         is the list of news.
+     * @param page         is the latest page loaded, starting from 1.
+     * @param hasMorePages is whether there were pages left to load.
+     * @param savedAt      is the time when the snapshot was taken, in milliseconds.
+     */
+    NewsSnapshot(String key, List<News> news, int page, boolean hasMorePages, long savedAt) {
+        this.key = key;
+        this.news = news;
+        this.page = page;
+        this.hasMorePages = hasMorePages;
+        this.savedAt = savedAt;
+    }
+
+    /**
+     * Encodes the snapshot in the binary format.
+     *
+     * @return the bytes of the snapshot file.
+     */
+    byte[] encode() {
+        // Number every distinct String in the order it is first found.
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (News current : news) {
+            indexOf(current.getTitle(), indexes, strings);
+            indexOf(current.getSection(), indexes, strings);
+            indexOf(current.getUrl(), indexes, strings);
+            indexOf(current.getThumbnail(), indexes, strings);
+            for (String author : current.getAuthorList()) indexOf(author, indexes, strings);
+        }
+
+        Output out = new Output(64 + news.size() * 256);
+        out.writeInt(MAGIC);
+        out.writeVarint(MAJOR_VERSION);
+        out.writeVarint(MINOR_VERSION);
+
+        Output header = new Output(64 + key.length());
+        header.writeString(key);
+        header.writeVarint(savedAt);
+        header.writeVarint(page);
+        header.writeVarint(hasMorePages ? 1 : 0);
+        out.writeBlock(header);
+
+        byte[][] encodedStrings = new byte[strings.size()][];
+        out.writeVarint(strings.size());
+        for (int i = 0; i < encodedStrings.length; i++) {
+            encodedStrings[i] = strings.get(i).getBytes(UTF_8);
+            out.writeVarint(encodedStrings[i].length);
+        }
+        for (byte[] encoded : encodedStrings) out.write(encoded, 0, encoded.length);
+
+        out.writeVarint(news.size());
+        Output record = new Output(64);
+        long previousDate = 0;
+        for (News current : news) {
+            record.reset();
+            record.writeVarint(indexes.get(current.getTitle()));
+            record.writeVarint(indexes.get(current.getSection()));
+            record.writeVarint(indexes.get(current.getUrl()));
+            record.writeVarint(indexes.get(current.getThumbnail()));
+            String[] authors = current.getAuthorList();
+            record.writeVarint(authors.length);
+            for (String author : authors) record.writeVarint(indexes.get(author));
+            record.writeVarint(zigZag(current.getPublishedAt() - previousDate));
+            previousDate = current.getPublishedAt();
+            out.writeBlock(record);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer(), 0, out.size());
+        out.writeInt((int) crc.getValue());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a snapshot.
+     *
+     * @param bytes is a buffer with the bytes of a snapshot file, from its position to its limit.
+     *              It must be backed by an array.
+     * @return the snapshot, or null if it was written with another major version.
+     * @throws IOException if the snapshot is corrupt.
+     */
+    static NewsSnapshot decode(ByteBuffer bytes) throws IOException {
+        try {
+            int start = bytes.position();
+            int end = bytes.limit() - 4;
+            CRC32 crc = new CRC32();
+            crc.update(bytes.array(), bytes.arrayOffset() + start, end - start);
+            if (bytes.getInt(end) != (int) crc.getValue()) throw new IOException("Corrupt snapshot");
+            bytes.limit(end);
+
+            if (bytes.getInt() != MAGIC) throw new IOException("Not a snapshot");
+            if (readVarint(bytes) != MAJOR_VERSION) return null;
+            readVarint(bytes);  // Any minor version can be read.
+
+            ByteBuffer header = readBlock(bytes);
+            String key = readString(header);
+            long savedAt = readVarint(header);
+            int page = (int) readVarint(header);
+            boolean hasMorePages = readVarint(header) != 0;
+
+            String[] strings = new String[readCount(bytes)];
+            int[] lengths = new int[strings.length];
+            for (int i = 0; i < lengths.length; i++) lengths[i] = readCount(bytes);
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = new String(bytes.array(), bytes.arrayOffset() + bytes.position(), lengths[i], UTF_8);
+                bytes.position(bytes.position() + lengths[i]);
+            }
+
+            int count = readCount(bytes);
+            List<News> news = new ArrayList<>(count);
+            long date = 0;
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = readBlock(bytes);
+                String title = strings[readIndex(record, strings.length)];
+                String section = strings[readIndex(record, strings.length)];
+                String url = strings[readIndex(record, strings.length)];
+                String thumbnail = strings[readIndex(record, strings.length)];
+                int authorCount = readCount(record);
+                String[] authors = authorCount == 0 ? News.NO_AUTHORS : new String[authorCount];
+                for (int j = 0; j < authorCount; j++) authors[j] = strings[readIndex(record, strings.length)];
+                date += unZigZag(readVarint(record));
+                news.add(new News(title, section, url, thumbnail, authors, date));
+            }
+            return new NewsSnapshot(key, news, page, hasMorePages, savedAt);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing it. A temporary file is written first, so a failure
+     * never leaves a half-written snapshot.
+     *
+     * @param file is the file to be written.
+     * @throws IOException if the file could not be written.
+     */
+    void write(File file) throws IOException {
+        byte[] bytes = encode();
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to replace the snapshot " + file);
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file.
+     *
+     * @param file is the file to be read.
+     * @return the snapshot, or null if there is none or it was written with another major version.
+     * @throws IOException if the file could not be read or is corrupt.
+     */
+    static NewsSnapshot read(File file) throws IOException {
+        if (!file.exists()) return null;
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > MAX_FILE_BYTES) throw new IOException("Snapshot too large: " + size + " bytes");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) throw new IOException("Truncated snapshot");
+            }
+            buffer.flip();
+            return decode(buffer);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the index of a String in the string table, adding it if it is not there yet.
+     */
+    private static int indexOf(String value, Map<String, Integer> indexes, List<String> strings) {
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(value, index);
+            strings.add(value);
+        }
+        return index;
+    }
+
+    /**
+     * Maps signed values to unsigned ones, so values close to 0 have short varints.
+     */
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads an unsigned varint: 7 bits per byte, least significant first, with the highest bit of
+     * every byte but the last one set.
+     */
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a count or a length. Every counted item takes at least a byte, so a valid count is
+     * never larger than the bytes left, which keeps a corrupt count from allocating huge arrays.
+     */
+    private static int readCount(ByteBuffer in) throws IOException {
+        long value = readVarint(in);
+        if (value < 0 || value > in.remaining()) throw new IOException("Count out of range: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Reads an index in the string table.
+     *
+     * @param size is the number of strings in the table.
+     */
+    private static int readIndex(ByteBuffer in, int size) throws IOException {
+        long value = readVarint(in);
+        if (value < 0 || value >= size) throw new IOException("Index out of range: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Reads a block prefixed with its length, and skips it in the given buffer.
+     *
+     * @return a buffer with the contents of the block.
+     */
+    private static ByteBuffer readBlock(ByteBuffer in) throws IOException {
+        int length = readCount(in);
+        ByteBuffer block = in.slice();
+        block.limit(length);
+        in.position(in.position() + length);
+        return block;
+    }
+
+    /**
+     * Reads a String prefixed with its length in bytes.
+     */
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readCount(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Growable buffer for encoding a snapshot.
+     */
+    private static class Output extends ByteArrayOutputStream {
+        Output(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeBlock(Output block) {
+            writeVarint(block.size());
+            write(block.buf, 0, block.size());
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_ARTICLE_ID;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_AUTHOR;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_ID;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_POSITION;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_PUBLISHED_AT;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_SECTION;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_THUMBNAIL;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_TITLE;
+import static com.example.android.newsapp.NewsDbHelper.COLUMN_URL;
+import static com.example.android.newsapp.NewsDbHelper.TABLE_ARTICLES;
+import static com.example.android.newsapp.NewsDbHelper.TABLE_AUTHORS;
+import static com.example.android.newsapp.NewsDbHelper.TABLE_TITLES_FTS;
+
+/**
+ * Persistent store of every news fetched, kept in a SQLite database. News can be searched locally
+ * by section, author, publication date and words of the title, without any network request.
+ */
+class NewsStore {
+    private static final String LOG_TAG = NewsStore.class.getSimpleName();
+
+    // Maximum number of news kept. The oldest ones are deleted when there are more.
+    private static final int MAX_ARTICLES = 5000;
+
+    private static NewsStore instance;
+
+    private final NewsDbHelper dbHelper;
+
+    /**
+     * Filter for {@link #query(Filter)}. Every condition is optional.
+     */
+    static class Filter {
+        String section;                         // Section name.
+        String author;                          // Author name.
+        long fromDate = Long.MIN_VALUE;         // Minimum publication date, in milliseconds.
+        long toDate = Long.MAX_VALUE;           // Maximum publication date, in milliseconds.
+        String text;                            // Words to be found in the title.
+        int limit = 500;                        // Maximum number of news returned.
+    }
+
+    private NewsStore(Context context) {
+        dbHelper = new NewsDbHelper(context);
+    }
+
+    /**
+     * Returns the store shared by the whole app.
+     *
+     * @param context of the app.
+     * @return the shared {@link NewsStore}.
+     */
+    static synchronized NewsStore getInstance(Context context) {
+        if (instance == null) instance = new NewsStore(context);
+        return instance;
+    }
+
+    /**
+     * Inserts the given news, or updates them if a news with the same URL is already stored. All
+     * the news are written in a single transaction. Errors are logged and otherwise ignored, since
+     * the store is only a local copy of the news.
+     *
+     * @param news is the list of news to be stored.
+     */
+    void upsert(List<News> news) {
+        if (news == null || news.isEmpty()) return;
+
+        try {
+            upsertInTransaction(dbHelper.getWritableDatabase(), news);
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem storing the news.", e);
+        }
+    }
+
+    /**
+     * Performs the actual {@link #upsert(List)} in a single transaction.
+     *
+     * @param db   is the database to write to.
+     * @param news is the list of news to be stored.
+     */
+    private static void upsertInTransaction(SQLiteDatabase db, List<News> news) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_ARTICLES + " SET "
+                + COLUMN_TITLE + " = ?, " + COLUMN_SECTION + " = ?, " + COLUMN_PUBLISHED_AT + " = ?, "
+                + COLUMN_THUMBNAIL + " = ? WHERE " + COLUMN_URL + " = ?");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_ARTICLES + " ("
+                + COLUMN_TITLE + ", " + COLUMN_SECTION + ", " + COLUMN_PUBLISHED_AT + ", " + COLUMN_THUMBNAIL
+                + ", " + COLUMN_URL + ") VALUES (?, ?, ?, ?, ?)");
+        SQLiteStatement selectId = db.compileStatement("SELECT " + COLUMN_ID + " FROM " + TABLE_ARTICLES
+                + " WHERE " + COLUMN_URL + " = ?");
+        SQLiteStatement deleteAuthors = db.compileStatement("DELETE FROM " + TABLE_AUTHORS + " WHERE "
+                + COLUMN_ARTICLE_ID + " = ?");
+        SQLiteStatement insertAuthor = db.compileStatement("INSERT INTO " + TABLE_AUTHORS + " ("
+                + COLUMN_ARTICLE_ID + ", " + COLUMN_POSITION + ", " + COLUMN_AUTHOR + ") VALUES (?, ?, ?)");
+
+        db.beginTransaction();
+        try {
+            for (News currentNews : news) {
+                if (currentNews.getUrl().isEmpty()) continue;
+
+                // Update the news if it is already stored, so its id (and its entry in the
+                // full-text index) is kept. Otherwise, insert it.
+                long id;
+                bindArticle(update, currentNews);
+                if (update.executeUpdateDelete() > 0) {
+                    selectId.bindString(1, currentNews.getUrl());
+                    id = selectId.simpleQueryForLong();
+                    deleteAuthors.bindLong(1, id);
+                    deleteAuthors.executeUpdateDelete();
+                } else {
+                    bindArticle(insert, currentNews);
+                    id = insert.executeInsert();
+                }
+
+                String[] authors = currentNews.getAuthorList();
+                for (int i = 0; i < authors.length; i++) {
+                    insertAuthor.bindLong(1, id);
+                    insertAuthor.bindLong(2, i);
+                    insertAuthor.bindString(3, authors[i]);
+                    insertAuthor.executeInsert();
+                }
+            }
+
+            // Keep only the newest news.
+            db.execSQL("DELETE FROM " + TABLE_ARTICLES + " WHERE " + COLUMN_ID + " IN (SELECT " + COLUMN_ID
+                    + " FROM " + TABLE_ARTICLES + " ORDER BY " + COLUMN_PUBLISHED_AT + " DESC LIMIT -1 OFFSET "
+                    + MAX_ARTICLES + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+            selectId.close();
+            deleteAuthors.close();
+            insertAuthor.close();
+        }
+    }
+
+    /**
+     * Binds the fields of a news to an update or insert statement of the articles table.
+     */
+    private static void bindArticle(SQLiteStatement statement, News news) {
+        statement.bindString(1, news.getTitle());
+        statement.bindString(2, news.getSection());
+        statement.bindLong(3, news.getPublishedAt());
+        statement.bindString(4, news.getThumbnail());
+        statement.bindString(5, news.getUrl());
+    }
+
+    /**
+     * Returns the stored news that match the given filter, from the newest to the oldest.
+     *
+     * @param filter is the filter to be applied.
+     * @return the list of news found.
+     */
+    List<News> query(Filter filter) {
+        StringBuilder where = new StringBuilder(COLUMN_PUBLISHED_AT + " BETWEEN ? AND ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(filter.fromDate));
+        args.add(String.valueOf(filter.toDate));
+        if (filter.section != null) {
+            where.append(" AND ").append(COLUMN_SECTION).append(" = ?");
+            args.add(filter.section);
+        }
+        if (filter.author != null) {
+            where.append(" AND ").append(COLUMN_ID).append(" IN (SELECT ").append(COLUMN_ARTICLE_ID)
+                    .append(" FROM ").append(TABLE_AUTHORS).append(" WHERE ").append(COLUMN_AUTHOR).append(" = ?)");
+            args.add(filter.author);
+        }
+        String match = filter.text != null ? toMatchExpression(filter.text) : null;
+        if (match != null) {
+            where.append(" AND ").append(COLUMN_ID).append(" IN (SELECT docid FROM ").append(TABLE_TITLES_FTS)
+                    .append(" WHERE ").append(TABLE_TITLES_FTS).append(" MATCH ?)");
+            args.add(match);
+        }
+
+        // Select the matching articles along with their authors, one row per author, and fold the
+        // rows of every article into a single news.
+        String sql = "SELECT a." + COLUMN_ID + ", a." + COLUMN_TITLE + ", a." + COLUMN_SECTION + ", a." + COLUMN_URL
+                + ", a." + COLUMN_PUBLISHED_AT + ", a." + COLUMN_THUMBNAIL + ", au." + COLUMN_AUTHOR
+                + " FROM (SELECT * FROM " + TABLE_ARTICLES + " WHERE " + where + " ORDER BY " + COLUMN_PUBLISHED_AT
+                + " DESC LIMIT " + filter.limit + ") a LEFT JOIN " + TABLE_AUTHORS + " au ON au." + COLUMN_ARTICLE_ID
+                + " = a." + COLUMN_ID + " ORDER BY a." + COLUMN_PUBLISHED_AT + " DESC, a." + COLUMN_ID + ", au." + COLUMN_POSITION;
+
+        List<News> news = new ArrayList<>();
+        NewsFieldParser parser = new NewsFieldParser();
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql, args.toArray(new String[args.size()]));
+        try {
+            long currentId = -1;
+            String title = null, section = null, url = null, thumbnail = null;
+            long publishedAt = News.UNKNOWN_DATE;
+            List<String> authors = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                if (id != currentId) {
+                    if (currentId != -1) news.add(new News(title, section, url, thumbnail, toArray(authors), publishedAt));
+                    currentId = id;
+                    title = cursor.getString(1);
+                    section = parser.internSection(cursor.getString(2));
+                    url = cursor.getString(3);
+                    publishedAt = cursor.getLong(4);
+                    thumbnail = cursor.getString(5);
+                    authors.clear();
+                }
+                if (!cursor.isNull(6)) authors.add(cursor.getString(6));
+            }
+            if (currentId != -1) news.add(new News(title, section, url, thumbnail, toArray(authors), publishedAt));
+        } finally {
+            cursor.close();
+        }
+        return news;
+    }
+
+    /**
+     * Turns the words typed by the user into a full-text query that matches titles containing
+     * words starting with every one of them.
+     *
+     * @param text is the text typed by the user.
+     * @return the MATCH expression, or null if there are no words in the text.
+     */
+    static String toMatchExpression(String text) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) word.append(c);
+            else if (word.length() > 0) {
+                if (match.length() > 0) match.append(' ');
+                match.append(word).append('*');
+                word.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private static String[] toArray(List<String> authors) {
+        return authors.isEmpty() ? News.NO_AUTHORS : authors.toArray(new String[authors.size()]);
+    }
+}
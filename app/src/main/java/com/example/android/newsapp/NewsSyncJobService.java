@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Periodically brings the cached first page of every query up to date, so opening the app shows
+ * fresh news straight from the cache. Only the news published after the newest cached one are
+ * requested (from-date parameter), and they are merged into the cached page.
+ * <p>
+ * The job runs only while the device is charging or connected to an unmetered network.
+ */
+public class NewsSyncJobService extends JobService {
+    private static final String LOG_TAG = NewsSyncJobService.class.getSimpleName();
+
+    // Job ids for the two sets of conditions under which the sync may run.
+    private static final int UNMETERED_JOB_ID = 1;
+    private static final int CHARGING_JOB_ID = 2;
+
+    // Time between two syncs: one hour.
+    private static final long SYNC_INTERVAL_MILLIS = 60 * 60 * 1000;
+
+    private Thread syncThread;  // Thread performing the current sync.
+
+    /**
+     * Schedules the periodic sync, unless it is already scheduled. Job constraints are all
+     * required at once, so there is one job for each alternative condition.
+     *
+     * @param context of the app.
+     */
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        Set<Integer> pendingJobs = new HashSet<>();
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) pendingJobs.add(job.getId());
+
+        ComponentName service = new ComponentName(context, NewsSyncJobService.class);
+        if (!pendingJobs.contains(UNMETERED_JOB_ID)) {
+            jobScheduler.schedule(new JobInfo.Builder(UNMETERED_JOB_ID, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                    .setPeriodic(SYNC_INTERVAL_MILLIS)
+                    .setPersisted(true)
+                    .build());
+        }
+        if (!pendingJobs.contains(CHARGING_JOB_ID)) {
+            jobScheduler.schedule(new JobInfo.Builder(CHARGING_JOB_ID, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                    .setRequiresCharging(true)
+                    .setPeriodic(SYNC_INTERVAL_MILLIS)
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // The network requests can't be performed on the main thread.
+        syncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = true;
+                // The pages of the latest policy of the app are the ones it will look for in the
+                // cache, whatever the network the sync runs on.
+                FetchPolicy policy = NetworkMonitor.getInstance(NewsSyncJobService.this).getLastPolicy();
+                NewsCache cache = NewsCache.getInstance(NewsSyncJobService.this);
+                List<NewsQuery> queries = NewsActivity.buildQueries(NewsSyncJobService.this, policy);
+                for (NewsQuery query : queries) {
+                    if (Thread.currentThread().isInterrupted()) return;
+                    success &= syncQuery(cache, NewsStore.getInstance(NewsSyncJobService.this), query);
+                }
+
+                // On an unmetered network, the bodies of the news now at the top of the list are
+                // downloaded too, so they can be read offline.
+                if (params.getJobId() == UNMETERED_JOB_ID && !Thread.currentThread().isInterrupted())
+                    prefetchArticles(cache, queries);
+                jobFinished(params, !success);
+            }
+        }, LOG_TAG);
+        syncThread.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The conditions are no longer met: stop and try again later.
+        if (syncThread != null) syncThread.interrupt();
+        return true;
+    }
+
+    /**
+     * Prefetches the bodies of the news at the top of the cached first pages of the queries, in
+     * the order the app shows them.
+     *
+     * @param cache   is the cache of the first pages.
+     * @param queries are the queries whose news are shown by the app.
+     */
+    private void prefetchArticles(NewsCache cache, List<NewsQuery> queries) {
+        List<List<News>> pages = new ArrayList<>(queries.size());
+        for (NewsQuery query : queries) {
+            NewsCache.Entry cached = cache.get(query.toUrl());
+            if (cached != null) pages.add(cached.news);
+        }
+        if (!pages.isEmpty()) ArticlePrefetcher.getInstance(this).prefetchNow(NewsFeed.mergeNews(pages));
+    }
+
+    /**
+     * Merges the news published after the newest cached news of a query into its cached first page,
+     * and writes them to the local store.
+     *
+     * @param cache    is the cache of the first pages.
+     * @param store    is the local store of news.
+     * @param query    is the query, for its first page.
+     * @return true if the cached page is up to date, false if the news could not be fetched.
+     */
+    static boolean syncQuery(NewsCache cache, NewsStore store, NewsQuery query) {
+        String pageUrl = query.toUrl();
+        NewsCache.Entry cached = cache.get(pageUrl);
+
+        // Look for the newest cached news. Without cached news, the whole first page is fetched.
+        long lastSeen = News.UNKNOWN_DATE;
+        if (cached != null) {
+            for (News news : cached.news) lastSeen = Math.max(lastSeen, news.getPublishedAt());
+        }
+        String deltaUrl = query.buildUpon().fromDate(lastSeen).build().toUrl();
+
+        List<News> delta = QueryUtils.fetchNewsData(deltaUrl);
+        if (delta == null) {
+            Log.i(LOG_TAG, "Unable to sync " + pageUrl);
+            return false;
+        }
+
+        // The first page holds the newest news of the query, from the delta or from the cache.
+        // Its validators no longer describe the merged list, so they are dropped.
+        List<News> merged = delta;
+        if (cached != null) {
+            List<List<News>> lists = new ArrayList<>(2);
+            lists.add(delta);
+            lists.add(cached.news);
+            merged = NewsFeed.mergeNews(lists);
+            if (merged.size() > query.getPageSize())
+                merged = new ArrayList<>(merged.subList(0, query.getPageSize()));
+        }
+        cache.put(pageUrl, merged, null, null);
+        store.upsert(delta);
+        Log.i(LOG_TAG, "Synced " + delta.size() + " news for " + pageUrl);
+        return true;
+    }
+}
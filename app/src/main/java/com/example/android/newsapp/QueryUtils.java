@@ -16,22 +16,29 @@
 package com.example.android.newsapp;
 
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
+import android.util.MalformedJsonException;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Helper methods related to requesting and receiving news data from content.guardianapis.com.
@@ -39,6 +46,66 @@ import java.util.List;
 final class QueryUtils {
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
+    /**
+     * Available strategies for turning the HTTP response into a list of {@link News} objects.
+     */
+    enum ParseMode {
+        // Read the whole response into a String and build a JSONObject tree from it.
+        TREE,
+        // Read JSON tokens directly from the connection stream, building every {@link News} as
+        // soon as its element of the "results" array has been read.
+        STREAMING
+    }
+
+    // Parse mode used by {@link #fetchNewsData(String)}.
+    private static final ParseMode DEFAULT_PARSE_MODE = ParseMode.STREAMING;
+
+    // Default timeouts, in milliseconds, and number of idle connections kept alive for reuse.
+    static final int DEFAULT_CONNECT_TIMEOUT = 15000;
+    static final int DEFAULT_READ_TIMEOUT = 10000;
+    static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    // Transport used for every HTTP request.
+    private static volatile HttpTransport transport = new UrlConnectionTransport(
+            DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_CONNECTIONS);
+
+    // Policy for retrying failed requests, and circuit breaker shared by every request to the API:
+    // it opens after 5 consecutive failures, for at least 30 seconds.
+    private static volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private static final CircuitBreaker circuitBreaker = new CircuitBreaker(5, 30 * 1000);
+
+    /**
+     * Receives every {@link News} as soon as it has been parsed from a streamed response, before
+     * the whole list is available.
+     */
+    interface NewsListener {
+        /**
+         * Called on the parsing thread for every news read, in order.
+         *
+         * @param news is the news just read.
+         * @throws IOException to abort the parsing, for instance when it is no longer needed.
+         */
+        void onNewsParsed(News news) throws IOException;
+    }
+
+    /**
+     * Result of a request to the API: the list of news along with the validators needed for
+     * revalidating it later.
+     */
+    static class NewsResponse {
+        final List<News> news;          // List of news, or null if there are no results.
+        final String etag;              // Value of the "ETag" header, or null.
+        final String lastModified;      // Value of the "Last-Modified" header, or null.
+        final boolean notModified;      // Whether the list comes from a revalidated cache entry.
+
+        NewsResponse(List<News> news, String etag, String lastModified, boolean notModified) {
+            this.news = news;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.notModified = notModified;
+        }
+    }
+
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -48,91 +115,532 @@ final class QueryUtils {
     }
 
     /**
-     * Query the API dataset and return a list of {@link News} objects.
+     * Replaces the transport used for every HTTP request, e.g. for changing its timeouts.
+     *
+     * @param httpTransport is the new {@link HttpTransport}.
+     */
+    static void setTransport(HttpTransport httpTransport) {
+        transport = httpTransport;
+    }
+
+    /**
+     * Replaces the policy for retrying failed requests.
+     *
+     * @param policy is the new {@link RetryPolicy}.
+     */
+    static void setRetryPolicy(RetryPolicy policy) {
+        retryPolicy = policy;
+    }
+
+    /**
+     * Query the API dataset and return a list of {@link News} objects, using the default parse
+     * mode.
      *
      * @param requestUrl is the URL for getting the JSON object with the list of news.
-     * @return a list of {@link News} objects.
+     * @return a list of {@link News} objects, or null if the request failed.
      */
     static List<News> fetchNewsData(String requestUrl) {
+        return fetchNewsData(requestUrl, DEFAULT_PARSE_MODE);
+    }
+
+    /**
+     * Query the API dataset and return a list of {@link News} objects.
+     *
+     * @param requestUrl is the URL for getting the JSON object with the list of news.
+     * @param parseMode  is the strategy used for parsing the JSON response.
+     * @return a list of {@link News} objects, or null if the request failed.
+     */
+    static List<News> fetchNewsData(String requestUrl, ParseMode parseMode) {
+        try {
+            NewsResponse response = fetchNewsResponse(requestUrl, parseMode, null);
+            return response != null ? response.news : null;
+        } catch (NewsFetchException e) {
+            Log.e(LOG_TAG, "Problem retrieving the news JSON results.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Query the API dataset, revalidating a previously cached list of news, if any. When the
+     * server answers that the cached list is still valid ("304 Not Modified"), the cached list is
+     * returned without downloading nor parsing anything.
+     *
+     * @param requestUrl is the URL for getting the JSON object with the list of news.
+     * @param parseMode  is the strategy used for parsing the JSON response.
+     * @param cached     is the cached entry for the URL, or null if there's none.
+     * @return the {@link NewsResponse}, or null if the request was interrupted.
+     * @throws NewsFetchException if the request failed.
+     */
+    static NewsResponse fetchNewsResponse(String requestUrl, ParseMode parseMode, NewsCache.Entry cached)
+            throws NewsFetchException {
+        return fetchNewsResponse(requestUrl, parseMode, cached, null);
+    }
+
+    /**
+     * Query the API dataset as {@link #fetchNewsResponse(String, ParseMode, NewsCache.Entry)} does,
+     * reporting every news to the given listener as soon as it has been parsed. Only the streaming
+     * mode reports news one at a time; the tree mode reports them all once parsed.
+     * <p>
+     * Transient failures are retried as the {@link RetryPolicy} says, unless some news have already
+     * been reported to the listener. While the API keeps failing, the circuit breaker makes
+     * requests fail right away instead.
+     *
+     * @param requestUrl is the URL for getting the JSON object with the list of news.
+     * @param parseMode  is the strategy used for parsing the JSON response.
+     * @param cached     is the cached entry for the URL, or null if there's none.
+     * @param listener   is the listener for every news parsed, or null.
+     * @return the {@link NewsResponse}, or null if the request was interrupted or aborted by the
+     * listener.
+     * @throws NewsFetchException if the request failed.
+     */
+    static NewsResponse fetchNewsResponse(String requestUrl, ParseMode parseMode, NewsCache.Entry cached,
+                                          NewsListener listener) throws NewsFetchException {
         // Create URL object from the given string URL "requestUrl".
-        URL url = null;
+        URL url;
         try {
             url = new URL(requestUrl);
         } catch (MalformedURLException e) {
-            Log.e(LOG_TAG, "Problem building the URL.", e);
+            throw new NewsFetchException(NewsFetchException.Kind.INVALID_REQUEST, "Problem building the URL.", e);
         }
 
-        // Perform HTTP request to the URL and receive a JSON response back.
-        String jsonResponse = null;
+        CountingListener countingListener = listener != null ? new CountingListener(listener) : null;
+        NewsFetchException failure = null;
+        for (int attempts = 1; ; attempts++) {
+            try {
+                circuitBreaker.acquire();
+            } catch (NewsFetchException e) {
+                // A retry refused by the circuit breaker reports the failure that led to it.
+                throw failure != null ? failure : e;
+            }
+
+            try {
+                NewsResponse response = requestNews(url, parseMode, cached, countingListener);
+                circuitBreaker.onSuccess();
+                return response;
+            } catch (NewsFetchException e) {
+                failure = e;
+            } catch (SocketTimeoutException e) {
+                failure = new NewsFetchException(NewsFetchException.Kind.NETWORK, "The request timed out.", e);
+            } catch (InterruptedIOException e) {
+                // The request is no longer needed: this is not an error.
+                return null;
+            } catch (IOException e) {
+                failure = new NewsFetchException(NewsFetchException.Kind.NETWORK, "Problem retrieving the news.", e);
+            }
+            circuitBreaker.onFailure(failure);
+
+            // News already reported can't be taken back, so a request that failed halfway is not
+            // repeated.
+            RetryPolicy policy = retryPolicy;
+            if ((countingListener != null && countingListener.count > 0) || !policy.shouldRetry(failure, attempts))
+                throw failure;
+            long delay = policy.delayMillis(failure, attempts);
+            Log.w(LOG_TAG, "Retrying in " + delay + " ms: " + failure.getMessage());
+            Metrics.requestsRetried.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Performs a single attempt of a request to the API.
+     *
+     * @param url       is the URL for getting the JSON object with the list of news.
+     * @param parseMode is the strategy used for parsing the JSON response.
+     * @param cached    is the cached entry for the URL, or null if there's none.
+     * @param listener  is the listener for every news parsed, or null.
+     * @return the {@link NewsResponse}.
+     * @throws NewsFetchException    if the server answered with an error or with a malformed response.
+     * @throws InterruptedIOException if the request was interrupted or aborted by the listener.
+     * @throws IOException           if the request could not be performed.
+     */
+    private static NewsResponse requestNews(URL url, ParseMode parseMode, NewsCache.Entry cached,
+                                            NewsListener listener) throws IOException {
+        HttpTransport.Response response = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            // Perform a conditional HTTP request to the URL.
+            if (cached != null) response = transport.get(url, cached.etag, cached.lastModified);
+            else response = transport.get(url, null, null);
+
+            // If the cached list is still valid, there's nothing to download.
+            if (response.code == 304 && cached != null)
+                return new NewsResponse(cached.news, cached.etag, cached.lastModified, true);
+
+            // If the request was not successful (response code 200), there's nothing to parse.
+            if (response.code != 200) {
+                throw NewsFetchException.forResponse(response.code,
+                        RetryPolicy.parseRetryAfter(response.retryAfter, System.currentTimeMillis()));
+            }
+            if (response.body == null) {
+                throw new NewsFetchException(NewsFetchException.Kind.MALFORMED_RESPONSE,
+                        "Empty response", response.code, NewsFetchException.NO_RETRY_AFTER, null);
+            }
+
+            // Streaming mode parses the response while it is being read from the network, so
+            // there is no intermediate String holding the whole JSON document. Otherwise, extract
+            // relevant fields from the whole JSON response.
+            List<News> news;
+            if (parseMode == ParseMode.STREAMING) news = extractFeatureFromStream(response.body, listener);
+            else {
+                news = extractFeatureFromJson(readFromStream(response.body));
+                if (news != null && listener != null) {
+                    for (News currentNews : news) listener.onNewsParsed(currentNews);
+                }
+            }
+            return new NewsResponse(news, response.etag, response.lastModified, false);
+        } finally {
+            if (response != null) {
+                try {
+                    // Closing the response releases the connection for reuse.
+                    response.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing the HTTP response.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link NewsListener} that counts the news it forwards, so a failed request can tell whether
+     * its news have already been seen.
+     */
+    private static class CountingListener implements NewsListener {
+        private final NewsListener listener;    // Listener the news are forwarded to.
+        int count;                              // Number of news forwarded.
+
+        CountingListener(NewsListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onNewsParsed(News news) throws IOException {
+            count++;
+            listener.onNewsParsed(news);
+        }
+    }
+
+    /**
+     * Query the API dataset for the bodies of some news, requested with "show-fields=bodyText".
+     * Bodies are only prefetched, so a failed request is not retried, and no request is performed
+     * at all while the circuit breaker is open.
+     *
+     * @param requestUrl is the URL for getting the JSON object with the news and their bodies.
+     * @return a map from the URL of every news to its body, or null if the request failed or was
+     * interrupted.
+     */
+    static Map<String, String> fetchArticleBodies(String requestUrl) {
+        HttpTransport.Response response = null;
+        try {
+            circuitBreaker.acquire();
+            response = transport.get(new URL(requestUrl), null, null);
+            if (response.code != 200) {
+                throw NewsFetchException.forResponse(response.code,
+                        RetryPolicy.parseRetryAfter(response.retryAfter, System.currentTimeMillis()));
+            }
+            if (response.body == null) {
+                throw new NewsFetchException(NewsFetchException.Kind.MALFORMED_RESPONSE,
+                        "Empty response", response.code, NewsFetchException.NO_RETRY_AFTER, null);
+            }
+            Map<String, String> bodies = extractBodiesFromStream(response.body);
+            circuitBreaker.onSuccess();
+            return bodies;
+        } catch (InterruptedIOException e) {
+            // The bodies are no longer needed: this is not an error.
+            return null;
+        } catch (NewsFetchException e) {
+            if (e.kind != NewsFetchException.Kind.CIRCUIT_OPEN) circuitBreaker.onFailure(e);
+            Log.e(LOG_TAG, "Problem retrieving the article bodies.", e);
+            return null;
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTP request.", e);
+            circuitBreaker.onFailure(new NewsFetchException(NewsFetchException.Kind.NETWORK,
+                    "Problem retrieving the article bodies.", e));
+            Log.e(LOG_TAG, "Problem retrieving the article bodies.", e);
+            return null;
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing the HTTP response.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the "webUrl" and the "bodyText" field of every element of the "results" array, with
+     * the same streaming parser as the list of news, so bodies are never held twice in memory.
+     *
+     * @param inputStream is the stream with the JSON response. It is not closed by this method.
+     * @return a map from the URL of every news to its body. News without a body are left out.
+     * @throws IOException if the stream could not be read or is not valid JSON.
+     */
+    static Map<String, String> extractBodiesFromStream(InputStream inputStream) throws IOException {
+        Map<String, String> bodies = new LinkedHashMap<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("response") || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!reader.nextName().equals("results") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) readBody(reader, bodies);
+                    reader.endArray();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+            return bodies;
+        } catch (IllegalStateException | MalformedJsonException | EOFException e) {
+            // JsonReader reports unexpected tokens with unchecked exceptions, invalid syntax with
+            // MalformedJsonException, and a document cut short with EOFException. None of them is
+            // a network failure, and a retry would get the same response.
+            throw new NewsFetchException(NewsFetchException.Kind.MALFORMED_RESPONSE,
+                    "Malformed article JSON response", e);
+        }
+    }
+
+    /**
+     * Reads a single element of the "results" array, keeping its URL and body.
+     *
+     * @param reader positioned at the beginning of a news object.
+     * @param bodies is the map the URL and body of the news are added to.
+     * @throws IOException
+     */
+    private static void readBody(JsonReader reader, Map<String, String> bodies) throws IOException {
+        String webUrl = null;
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("webUrl") && reader.peek() == JsonToken.STRING) {
+                webUrl = reader.nextString();
+            } else if (name.equals("fields") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("bodyText") && reader.peek() == JsonToken.STRING)
+                        body = reader.nextString();
+                    else reader.skipValue();
+                }
+                reader.endObject();
+            } else reader.skipValue();
         }
+        reader.endObject();
 
-        // Extract relevant fields from the JSON response, create a list of {@link News}s and
-        // return this list.
-        return extractFeatureFromJson(jsonResponse);
+        if (webUrl != null && body != null && !body.isEmpty()) bodies.put(webUrl, body);
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Convert the {@link InputStream} into a String which contains the whole JSON response from
+     * the server.
      *
-     * @param url is the URL for the HTTP request.
+     * @param inputStream is the stream with the response.
      * @return a String as the response.
      * @throws IOException
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        // If the URL is null, then return an empty JSON string.
-        String jsonResponse = "";
-        if (url == null) {
-            return jsonResponse;
+    private static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+        BufferedReader reader = new BufferedReader(inputStreamReader);
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
         }
+        return output.toString();
+    }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+    /**
+     * Return a list of {@link News} objects built up by reading the JSON tokens of the given
+     * stream one at a time. Only the news being read is kept apart from the resulting list, so
+     * memory usage doesn't depend on the size of the response.
+     *
+     * @param inputStream is the stream with the JSON response. It is not closed by this method.
+     * @return the list of {@link News} objects parsed from the stream, or null if there's no
+     * "response" object or "results" array.
+     * @throws IOException if the stream could not be read or is not valid JSON.
+     */
+    static List<News> extractFeatureFromStream(InputStream inputStream) throws IOException {
+        return extractFeatureFromStream(inputStream, null);
+    }
+
+    /**
+     * Return a list of {@link News} objects built up by reading the JSON tokens of the given
+     * stream one at a time, reporting every news to the given listener as soon as it is read.
+     *
+     * @param inputStream is the stream with the JSON response. It is not closed by this method.
+     * @param listener    is the listener for every news read, or null.
+     * @return the list of {@link News} objects parsed from the stream, or null if there's no
+     * "response" object or "results" array.
+     * @throws IOException if the stream could not be read or is not valid JSON, or if the
+     *                     listener aborted the parsing.
+     */
+    static List<News> extractFeatureFromStream(InputStream inputStream, NewsListener listener) throws IOException {
+        long start = System.nanoTime();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000);
-            urlConnection.setConnectTimeout(15000);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200), then read the input stream and
-            // parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-
-                // Convert the {@link InputStream} into a String which contains the whole JSON
-                // response from the server.
-                StringBuilder output = new StringBuilder();
-                if (inputStream != null) {
-                    InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-                    BufferedReader reader = new BufferedReader(inputStreamReader);
-                    String line = reader.readLine();
-                    while (line != null) {
-                        output.append(line);
-                        line = reader.readLine();
-                    }
+            List<News> news = null;
+
+            // Look for the "response" object, skipping any other member of the root object.
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("response") && reader.peek() == JsonToken.BEGIN_OBJECT)
+                    news = readResponse(reader, new NewsFieldParser(), listener);
+                else reader.skipValue();
+            }
+            reader.endObject();
+
+            if (news == null) Log.i(LOG_TAG, "No \"results\" array for the query");
+            else recordParse(start, news.size());
+            return news;
+        } catch (IllegalStateException | NumberFormatException | MalformedJsonException | EOFException e) {
+            // JsonReader reports unexpected tokens and numbers with unchecked exceptions, invalid
+            // syntax with MalformedJsonException, and a document cut short with EOFException.
+            throw new NewsFetchException(NewsFetchException.Kind.MALFORMED_RESPONSE,
+                    "Malformed news JSON response", e);
+        }
+    }
+
+    /**
+     * Reads the "response" object, looking for the "results" array.
+     *
+     * @param reader   positioned at the beginning of the "response" object.
+     * @param parser   is the parser for the fields of every news.
+     * @param listener is the listener for every news read, or null.
+     * @return the list of {@link News} objects in the "results" array, or null if there's no such
+     * array.
+     * @throws IOException
+     */
+    private static List<News> readResponse(JsonReader reader, NewsFieldParser parser, NewsListener listener)
+            throws IOException {
+        List<News> news = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("results") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                news = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    News currentNews = readNews(reader, parser);
+                    news.add(currentNews);
+                    if (listener != null) listener.onNewsParsed(currentNews);
                 }
-                jsonResponse = output.toString();
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                reader.endArray();
+            } else reader.skipValue();
+        }
+        reader.endObject();
+        return news;
+    }
+
+    /**
+     * Reads a single element of the "results" array.
+     *
+     * @param reader positioned at the beginning of a news object.
+     * @param parser is the parser for the fields of the news.
+     * @return the {@link News} object built from the element.
+     * @throws IOException
+     */
+    private static News readNews(JsonReader reader, NewsFieldParser parser) throws IOException {
+        String webTitle = "";
+        String sectionName = "";
+        String webUrl = "";
+        String thumbnail = "";
+        String[] authors = News.NO_AUTHORS;
+        long webPublicationDate = News.UNKNOWN_DATE;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
             }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the news JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            switch (name) {
+                case "webTitle":
+                    webTitle = reader.nextString();
+                    break;
+                case "sectionName":
+                    sectionName = parser.internSection(reader.nextString());
+                    break;
+                case "webUrl":
+                    webUrl = reader.nextString();
+                    break;
+                case "webPublicationDate":
+                    webPublicationDate = parser.parseDateTime(reader.nextString());
+                    break;
+                case "references":
+                    authors = readAuthors(reader, parser);
+                    break;
+                case "fields":
+                    thumbnail = readThumbnail(reader);
+                    break;
+                default:
+                    reader.skipValue();
             }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why the
-                // makeHttpRequest(URL url) method signature specifies than an IOException could be
-                // thrown.
-                inputStream.close();
+        }
+        reader.endObject();
+
+        return new News(webTitle, sectionName, webUrl, thumbnail, authors, webPublicationDate);
+    }
+
+    /**
+     * Reads the "fields" object of a news, requested with "show-fields", keeping the thumbnail.
+     *
+     * @param reader positioned at the beginning of the "fields" object.
+     * @return the url of the thumbnail, or an empty String if there's none.
+     * @throws IOException
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnail = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnail") && reader.peek() == JsonToken.STRING)
+                thumbnail = reader.nextString();
+            else reader.skipValue();
+        }
+        reader.endObject();
+        return thumbnail;
+    }
+
+    /**
+     * Reads the "references" array of a news, keeping the references of type "author".
+     *
+     * @param reader positioned at the beginning of the "references" array.
+     * @param parser is the parser for the author names.
+     * @return the authors of the news.
+     * @throws IOException
+     */
+    private static String[] readAuthors(JsonReader reader, NewsFieldParser parser) throws IOException {
+        parser.beginAuthors();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String type = null;
+            String id = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) reader.skipValue();
+                else if (name.equals("type")) type = reader.nextString();
+                else if (name.equals("id")) id = reader.nextString();
+                else reader.skipValue();
             }
+            reader.endObject();
+
+            if ("author".equals(type) && id != null) parser.addAuthor(id);
         }
-        return jsonResponse;
+        reader.endArray();
+        return parser.endAuthors();
     }
 
     /**
@@ -142,19 +650,22 @@ final class QueryUtils {
      * @param newsJSON is the JSON object to be parsed and converted to a list of {@link News}
      *                 objects.
      * @return the list of {@link News} objects parsed form the input JSON object.
+     * @throws NewsFetchException if the response is not valid JSON or doesn't have the expected
+     *                            structure.
      */
-    private static List<News> extractFeatureFromJson(String newsJSON) {
+    static List<News> extractFeatureFromJson(String newsJSON) throws NewsFetchException {
         // If the JSON string is empty or null, then return null.
         if (TextUtils.isEmpty(newsJSON)) {
             return null;
         }
 
         // Create an empty ArrayList that we can start adding news to.
+        long start = System.nanoTime();
         List<News> news = new ArrayList<>();
 
         // Try to parse the JSON response string. If there's a problem with the way the JSON is
-        // formatted, a JSONException exception object will be thrown. Catch the exception so the
-        // app doesn't crash, and print the error message to the logs.
+        // formatted, a JSONException exception object will be thrown, which is reported as a
+        // malformed response, as the streaming parser does.
         try {
             // Create a JSONObject from the JSON response string.
             JSONObject baseJsonResponse = new JSONObject(newsJSON);
@@ -177,6 +688,7 @@ final class QueryUtils {
             JSONArray resultsArray = newsObject.getJSONArray("results");
 
             // For each news in the resultsArray, create a {@link News} object.
+            NewsFieldParser parser = new NewsFieldParser();
             JSONObject currentNews;
             for (int i = 0; i < resultsArray.length(); i++) {
                 // Get a single news element at position i within the list of news.
@@ -191,19 +703,27 @@ final class QueryUtils {
                 // of the news.
                 String sectionName = "";
                 if (!currentNews.isNull("sectionName"))
-                    sectionName = currentNews.getString("sectionName");
+                    sectionName = parser.internSection(currentNews.getString("sectionName"));
 
                 // Extract the value for the key called "webUrl", which represents the url of the
                 // news at www.theguardian.com.
                 String webUrl = "";
                 if (!currentNews.isNull("webUrl")) webUrl = currentNews.getString("webUrl");
 
+                // Extract the value for the key called "thumbnail" of the "fields" object, which
+                // represents the url of the thumbnail image of the news.
+                String thumbnail = "";
+                JSONObject fieldsObject = currentNews.optJSONObject("fields");
+                if (fieldsObject != null && !fieldsObject.isNull("thumbnail"))
+                    thumbnail = fieldsObject.getString("thumbnail");
+
                 // Extract the value for the key called "references", which represents the array of
                 // references of the news, including information about the authors.
-                String authors = "";
+                String[] authors = News.NO_AUTHORS;
                 if (!currentNews.isNull("references")) {
                     JSONArray referencesArray = currentNews.getJSONArray("references");
                     JSONObject currentReference;
+                    parser.beginAuthors();
                     for (int j = 0; j < referencesArray.length(); j++) {
                         // Get a single reference at position j within the list of references.
                         currentReference = referencesArray.getJSONObject(j);
@@ -212,80 +732,42 @@ final class QueryUtils {
                         // look for the author name at key "id".
                         if (currentReference.getString("type").equals("author"))
                             if (!currentReference.isNull("id"))
-                                if (j == 0) authors = parseAuthor(currentReference.getString("id"));
-                                else
-                                    authors = authors + ", " + parseAuthor(currentReference.getString("id"));
+                                parser.addAuthor(currentReference.getString("id"));
                     }
+                    authors = parser.endAuthors();
                 }
 
                 // Extract the value for the key called "webPublicationDate", which represents the
                 // publication date of the news.
-                String webPublicationDate = "";
+                long webPublicationDate = News.UNKNOWN_DATE;
                 if (!currentNews.isNull("webPublicationDate"))
-                    webPublicationDate = parseDateTime(currentNews.getString("webPublicationDate"));
+                    webPublicationDate = parser.parseDateTime(currentNews.getString("webPublicationDate"));
 
                 // Create a new {@link News} object with the data retrieved from the JSON response
                 // and add it to the list of news.
-                News newsElement = new News(webTitle, sectionName, webUrl, authors, webPublicationDate);
+                News newsElement = new News(webTitle, sectionName, webUrl, thumbnail, authors, webPublicationDate);
                 news.add(newsElement);
             }
-        } catch (
-                JSONException e)
-
-        {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message with the
-            // message from the exception.
-            Log.e(LOG_TAG, "Problem parsing the news JSON results", e);
+        } catch (JSONException e) {
+            throw new NewsFetchException(NewsFetchException.Kind.MALFORMED_RESPONSE,
+                    "Malformed news JSON response", e);
         }
 
         // Return the list of news.
+        recordParse(start, news.size());
         return news;
     }
 
     /**
-     * Takes the author from the JSON object, which comes in the format "author/string1-string2-..."
-     * and returns a String with the format "String1 String2 ...".
+     * Records the time spent parsing a response and the number of news found in it. When the
+     * response is parsed from the network stream, the parse time includes the time spent waiting
+     * for the body, which is recorded apart by the transport.
      *
-     * @param authorId is the string from the JSON document which contains the author name.
-     * @return the author name capitalized and separated by blank characters.
+     * @param startNanos is the instant the parsing started, as returned by {@link System#nanoTime()}.
+     * @param count      is the number of news parsed.
      */
-    private static String parseAuthor(String authorId) {
-        String author;
-
-        // Remove "author/" from input string.
-        String[] parts = authorId.split("/");
-        author = parts[1];
-
-        // Remove "-" separator and capitalize every word.
-        parts = author.split("-");
-        for (int i = 0; i < parts.length; i++) {
-            if (i == 0) author = parts[i].substring(0, 1).toUpperCase() + parts[i].substring(1);
-            else
-                author = author + " " + parts[i].substring(0, 1).toUpperCase() + parts[i].substring(1);
-        }
-
-        return author;
-    }
-
-    /**
-     * Takes the author from the JSON object, which comes in the format "YYYY-MM-DDTHH:MM:SSZ" and
-     * returns a String with the format "YYYY-MM-DD HH:MM:SS".
-     *
-     * @param webPublicationDate is the string from the JSON document which contains date and time.
-     * @return date and time separated by a blank character.
-     */
-    private static String parseDateTime(String webPublicationDate) {
-        String dateTime;
-
-        // Remove "T" character from input string.
-        String[] parts = webPublicationDate.split("T");
-        dateTime = parts[0];
-
-        // Remove "Z" character from input string.
-        parts = parts[1].split("Z");
-        dateTime = dateTime + " " + parts[0];
-
-        return dateTime;
+    private static void recordParse(long startNanos, int count) {
+        Metrics.parse.record(Metrics.elapsedMicros(startNanos));
+        Metrics.itemCount.record(count);
     }
 }
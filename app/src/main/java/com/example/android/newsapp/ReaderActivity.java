@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.app.LoaderManager.LoaderCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.Loader;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Shows the body of a news stored by the {@link ArticlePrefetcher}, as plain text, so it can be
+ * read without a connection. The news can always be opened in the browser instead, and it is
+ * right away if its body is no longer stored.
+ */
+public class ReaderActivity extends AppCompatActivity implements LoaderCallbacks<String> {
+    // Keys of the extras of the intent.
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_META = "meta";
+
+    // Constant value for the article loader ID.
+    private static final int ARTICLE_LOADER_ID = 1;
+
+    private String url;                 // URL of the news.
+    private TextView bodyTextView;
+    private View loadingIndicator;
+
+    /**
+     * Builds the intent for reading a news in the app.
+     *
+     * @param context of the app.
+     * @param news    is the news to be read.
+     * @return the intent for starting the {@link ReaderActivity}.
+     */
+    static Intent intentFor(Context context, News news) {
+        // Section, date and authors in a single line, leaving out the missing ones.
+        StringBuilder meta = new StringBuilder();
+        for (String part : new String[]{news.getSection(), news.getDate(), news.getAuthors()}) {
+            if (part.isEmpty()) continue;
+            if (meta.length() > 0) meta.append(" \u00b7 ");
+            meta.append(part);
+        }
+        return new Intent(context, ReaderActivity.class)
+                .putExtra(EXTRA_URL, news.getUrl())
+                .putExtra(EXTRA_TITLE, news.getTitle())
+                .putExtra(EXTRA_META, meta.toString());
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.reader_activity);
+        url = getIntent().getStringExtra(EXTRA_URL);
+        ((TextView) findViewById(R.id.reader_title)).setText(getIntent().getStringExtra(EXTRA_TITLE));
+        ((TextView) findViewById(R.id.reader_meta)).setText(getIntent().getStringExtra(EXTRA_META));
+        bodyTextView = (TextView) findViewById(R.id.reader_body);
+        loadingIndicator = findViewById(R.id.loading_indicator);
+        if (getSupportActionBar() != null) getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        Bundle args = new Bundle();
+        args.putString(EXTRA_URL, url);
+        getLoaderManager().initLoader(ARTICLE_LOADER_ID, args, this);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reader_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            openInBrowser();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Opens the news in a web browser.
+     */
+    private void openInBrowser() {
+        startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(url)));
+    }
+
+    @Override
+    public Loader<String> onCreateLoader(int id, Bundle args) {
+        return new ArticleLoader(this, args.getString(EXTRA_URL));
+    }
+
+    /**
+     * Shows the body of the news. If it was evicted from the store since the news was clicked, the
+     * news is opened in the browser instead.
+     */
+    @Override
+    public void onLoadFinished(Loader<String> loader, String body) {
+        loadingIndicator.setVisibility(View.GONE);
+        if (body == null) {
+            openInBrowser();
+            finish();
+            return;
+        }
+        bodyTextView.setText(body);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<String> loader) {
+        bodyTextView.setText(null);
+    }
+}
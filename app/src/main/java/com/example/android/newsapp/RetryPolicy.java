@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Decides whether, and when, a failed request to the news API is performed again:
+ * <p>
+ * * Only transient failures (network errors, rate limiting and server errors) are retried, up to
+ * a maximum number of attempts.
+ * * The delay grows exponentially with every attempt, and is randomized between 0 and that
+ * exponential bound ("full jitter"), so clients that failed at the same time don't retry at the
+ * same time either.
+ * * A "Retry-After" given by the server is the minimum delay. If the server asks to wait longer
+ * than the policy allows, the request is not retried at all.
+ */
+class RetryPolicy {
+    // Policy used by {@link QueryUtils}: 3 attempts, starting from 1 second between attempts.
+    static final RetryPolicy DEFAULT = new RetryPolicy(3, 1000, 8000, 30000);
+
+    // Format of HTTP dates, as in "Retry-After: Wed, 21 Oct 2015 07:28:00 GMT".
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final int maxAttempts;              // Maximum number of attempts, including the first.
+    private final long baseDelayMillis;         // Upper bound of the delay after the first attempt.
+    private final long maxDelayMillis;          // Upper bound of the delay after any attempt.
+    private final long maxRetryAfterMillis;     // Longest "Retry-After" the policy waits for.
+    private final Random random = new Random();
+
+    /**
+     * Constructs a new {@link RetryPolicy}.
+     *
+     * @param maxAttempts         is the maximum number of attempts, including the first one.
+     * @param baseDelayMillis     is the upper bound of the delay after the first attempt, which
+     *                            doubles after every attempt.
+     * @param maxDelayMillis      is the upper bound of the delay after any attempt.
+     * @param maxRetryAfterMillis is the longest "Retry-After" the policy waits for.
+     */
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long maxRetryAfterMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+    }
+
+    /**
+     * Returns whether a request that failed should be performed again.
+     *
+     * @param failure  is the failure of the latest attempt.
+     * @param attempts is the number of attempts performed so far.
+     * @return true if the request should be retried after {@link #delayMillis(NewsFetchException, int)}.
+     */
+    boolean shouldRetry(NewsFetchException failure, int attempts) {
+        return failure.isTransient() && attempts < maxAttempts
+                && failure.retryAfterMillis <= maxRetryAfterMillis;
+    }
+
+    /**
+     * Returns the time to wait before the next attempt: a random delay below the exponential bound
+     * of the attempt, but never less than the "Retry-After" of the failure.
+     *
+     * @param failure  is the failure of the latest attempt.
+     * @param attempts is the number of attempts performed so far, starting from 1.
+     * @return the delay, in milliseconds.
+     */
+    long delayMillis(NewsFetchException failure, int attempts) {
+        long bound = baseDelayMillis << Math.min(attempts - 1, 30);
+        if (bound <= 0 || bound > maxDelayMillis) bound = maxDelayMillis;
+        long delay = (long) (random.nextDouble() * bound);
+        return Math.max(delay, failure.retryAfterMillis);
+    }
+
+    /**
+     * Parses the value of a "Retry-After" header, which is either a number of seconds or an HTTP
+     * date.
+     *
+     * @param value     is the value of the header, or null.
+     * @param nowMillis is the current time, in milliseconds since the epoch.
+     * @return the time to wait, in milliseconds, or {@link NewsFetchException#NO_RETRY_AFTER} if
+     * there's no valid value.
+     */
+    static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null) return NewsFetchException.NO_RETRY_AFTER;
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds >= 0 ? seconds * 1000 : NewsFetchException.NO_RETRY_AFTER;
+        } catch (NumberFormatException e) {
+            // Not a number of seconds: try an HTTP date below.
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return NewsFetchException.NO_RETRY_AFTER;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+/**
+ * Estimate of the throughput of the current network, from the response bodies read by
+ * {@link UrlConnectionTransport}. Recent responses weigh more than older ones, so the estimate
+ * follows the network as it gets faster or slower.
+ */
+final class Throughput {
+    // Value of the estimate before any response has been measured.
+    static final long UNKNOWN = -1;
+
+    // Smaller bodies are ignored, as their read time is mostly latency rather than transfer.
+    private static final long MIN_SAMPLE_BYTES = 8 * 1024;
+
+    // Weight of every new sample in the estimate.
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    /**
+     * Interface for receiving the changes of the estimate.
+     */
+    interface Listener {
+        /**
+         * Called on the thread that read the response every time the estimate changes.
+         *
+         * @param bytesPerSecond is the new estimate, in bytes per second.
+         */
+        void onThroughputChanged(long bytesPerSecond);
+    }
+
+    // Estimated throughput, in bytes per second, or UNKNOWN.
+    private static long bytesPerSecond = UNKNOWN;
+
+    // Listener of the changes of the estimate, or null.
+    private static volatile Listener listener;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Throughput} object.
+     */
+    private Throughput() {
+    }
+
+    /**
+     * Sets the listener of the changes of the estimate.
+     *
+     * @param listener is the new listener, or null for removing the current one.
+     */
+    static void setListener(Listener listener) {
+        Throughput.listener = listener;
+    }
+
+    /**
+     * Updates the estimate with a response body, and tells the listener, if any.
+     *
+     * @param bytes     is the number of bytes read.
+     * @param readNanos is the time spent reading them, in nanoseconds.
+     */
+    static void record(long bytes, long readNanos) {
+        if (bytes < MIN_SAMPLE_BYTES || readNanos <= 0) return;
+        long sample = bytes * 1000000000L / readNanos;
+        long estimate;
+        synchronized (Throughput.class) {
+            bytesPerSecond = bytesPerSecond == UNKNOWN ? sample
+                    : (long) (SAMPLE_WEIGHT * sample + (1 - SAMPLE_WEIGHT) * bytesPerSecond);
+            estimate = bytesPerSecond;
+        }
+
+        // The listener is called without holding the lock, as it may check other state.
+        Listener current = listener;
+        if (current != null) current.onThroughputChanged(estimate);
+    }
+
+    /**
+     * Returns the estimated throughput, in bytes per second, or {@link #UNKNOWN}.
+     */
+    static synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Forgets the estimate, when the device switches to another network.
+     */
+    static synchronized void reset() {
+        bytesPerSecond = UNKNOWN;
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the thumbnails of the news into image views, through two levels of cache:
+ * <p>
+ * * A memory cache of decoded bitmaps, limited to a fraction of the heap, so low-RAM devices get a
+ * proportionally smaller cache.
+ * * A disk cache of the downloaded images, limited in size and evicted by least recent use.
+ * <p>
+ * Images are decoded downsampled to the size of the view, on a small pool of background threads.
+ * A request is cancelled when its view is reused for another news, so scrolling quickly never
+ * queues up work for rows that are no longer visible.
+ */
+class ThumbnailLoader {
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    // Name of the directory, inside the app cache directory, where images are stored.
+    private static final String CACHE_DIRECTORY = "thumbnails";
+
+    // Maximum size of the images on disk: 10 MB.
+    static final long DEFAULT_MAX_DISK_BYTES = 10 * 1024 * 1024;
+
+    // Fraction of the maximum heap size used by the memory cache.
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    // Maximum number of images downloaded and decoded at the same time.
+    private static final int MAX_CONCURRENT_LOADS = 3;
+
+    // Larger images are not downloaded: they are not thumbnails.
+    private static final int MAX_IMAGE_BYTES = 1024 * 1024;
+
+    private static ThumbnailLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;     // Decoded bitmaps, by image URL.
+    private final File directory;                           // Directory of the disk cache.
+    private final long maxDiskBytes;                        // Maximum size of the disk cache.
+    private final HttpTransport transport;                  // Transport for downloading images.
+    private final ExecutorService executor;                 // Threads for loading images.
+    private final Handler mainHandler;                      // Handler for showing the bitmaps.
+
+    // Request in flight for every view. Only accessed on the UI thread.
+    private final Map<ImageView, Request> requests = new WeakHashMap<>();
+
+    /**
+     * Constructs a new {@link ThumbnailLoader}.
+     *
+     * @param directory      is the directory of the disk cache.
+     * @param maxDiskBytes   is the maximum size, in bytes, of the disk cache.
+     * @param maxMemoryBytes is the maximum size, in bytes, of the memory cache.
+     * @param transport      is the transport for downloading the images.
+     */
+    ThumbnailLoader(File directory, long maxDiskBytes, long maxMemoryBytes, HttpTransport transport) {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.transport = transport;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+
+        // The size of the memory cache is measured in kilobytes.
+        memoryCache = new LruCache<String, Bitmap>((int) (maxMemoryBytes / 1024)) {
+            @Override
+            protected int sizeOf(String url, Bitmap bitmap) {
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+
+        // Images are loaded with background priority, so they never compete with the UI thread
+        // for the CPU while scrolling.
+        executor = Executors.newFixedThreadPool(MAX_CONCURRENT_LOADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, LOG_TAG);
+            }
+        });
+    }
+
+    /**
+     * Returns the loader shared by the whole app, with a memory cache of an eighth of the heap.
+     * Its downloads are not recorded, so images never skew the metrics of the news API or the
+     * throughput that chooses the fetch policy.
+     *
+     * @param context of the app.
+     * @return the shared {@link ThumbnailLoader}.
+     */
+    static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY);
+            long maxMemoryBytes = Runtime.getRuntime().maxMemory() / MEMORY_CACHE_FRACTION;
+            instance = new ThumbnailLoader(directory, DEFAULT_MAX_DISK_BYTES, maxMemoryBytes,
+                    new UrlConnectionTransport(QueryUtils.DEFAULT_CONNECT_TIMEOUT,
+                            QueryUtils.DEFAULT_READ_TIMEOUT, QueryUtils.DEFAULT_MAX_CONNECTIONS, false));
+        }
+        return instance;
+    }
+
+    /**
+     * Shows the image of the given URL in the view, cancelling any previous request for the same
+     * view. A cached bitmap is shown right away; otherwise, the view is cleared until the image
+     * has been loaded. Must be called on the UI thread.
+     *
+     * @param view     is the view where the image is shown.
+     * @param url      is the URL of the image.
+     * @param width    is the width of the view, in pixels.
+     * @param height   is the height of the view, in pixels.
+     * @param download is whether the image may be downloaded, or only read from the cache.
+     */
+    void load(ImageView view, String url, int width, int height, boolean download) {
+        // A request that may download the image also covers a request that may not.
+        Request current = requests.get(view);
+        if (current != null && current.url.equals(url) && (current.download || !download)) return;
+        cancel(view);
+
+        Bitmap bitmap = memoryCache.get(url);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        Request request = new Request(view, url, width, height, download);
+        requests.put(view, request);
+        request.future = executor.submit(request);
+    }
+
+    /**
+     * Cancels the request for the given view, if any, and clears the view, so its bitmap can be
+     * evicted. Must be called on the UI thread.
+     *
+     * @param view is the view whose request is cancelled.
+     */
+    void cancel(ImageView view) {
+        Request request = requests.remove(view);
+        if (request != null) {
+            request.cancelled = true;
+            request.future.cancel(true);
+        }
+        view.setImageDrawable(null);
+    }
+
+    /**
+     * Releases memory when the system asks for it: half of the memory cache while the app is
+     * running but memory is low, and the whole cache once the app is in the background.
+     *
+     * @param level is the level given to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) memoryCache.evictAll();
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+    }
+
+    /**
+     * Loading of a single image for a view. This is on a background thread.
+     */
+    private class Request implements Runnable {
+        final WeakReference<ImageView> view;    // View where the image is shown.
+        final String url;                       // URL of the image.
+        final int width;                        // Width of the view, in pixels.
+        final int height;                       // Height of the view, in pixels.
+        final boolean download;                 // Whether the image may be downloaded.
+        volatile boolean cancelled;             // Whether the view no longer needs the image.
+        Future<?> future;                       // Loading in the pool of threads.
+
+        Request(ImageView view, String url, int width, int height, boolean download) {
+            this.view = new WeakReference<>(view);
+            this.url = url;
+            this.width = width;
+            this.height = height;
+            this.download = download;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            try {
+                if (cancelled) return;
+                bitmap = loadBitmap(this);
+                if (bitmap != null && !cancelled) memoryCache.put(url, bitmap);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Problem loading the thumbnail " + url, e);
+            } finally {
+                // The request is finished even without a bitmap, or after a failure, so a later
+                // request for the same image, which may be allowed to download it, is not ignored.
+                finish(bitmap);
+            }
+        }
+
+        /**
+         * Removes the request from the requests in flight, on the UI thread, and shows its bitmap
+         * if the view is still waiting for it.
+         *
+         * @param bitmap is the bitmap loaded, or null if it could not be loaded.
+         */
+        private void finish(final Bitmap bitmap) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ImageView imageView = view.get();
+                    if (imageView == null || requests.get(imageView) != Request.this) return;
+                    requests.remove(imageView);
+                    if (bitmap != null) imageView.setImageBitmap(bitmap);
+                }
+            });
+        }
+    }
+
+    /**
+     * Loads the image of a request from the disk cache or, if it is not there and the request
+     * allows it, from the network, and decodes it downsampled to the size of the view.
+     *
+     * @param request is the request being loaded.
+     * @return the decoded bitmap, or null if it could not be loaded.
+     */
+    private Bitmap loadBitmap(Request request) {
+        File file = new File(directory, NewsCache.fileNameFor(request.url));
+        if (file.exists()) {
+            // Mark the file as recently used, so it is the last one to be evicted.
+            file.setLastModified(System.currentTimeMillis());
+            Bitmap bitmap = decodeFile(file, request.width, request.height);
+            if (bitmap != null) return bitmap;
+        }
+        if (!request.download) return null;
+
+        try {
+            byte[] image = download(request);
+            if (image == null) return null;
+            if (store(file, image)) return decodeFile(file, request.width, request.height);
+
+            // The image could not be stored, but it can still be shown.
+            return decodeBytes(image, request.width, request.height);
+        } catch (InterruptedIOException e) {
+            // The request has been cancelled: this is not an error.
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem downloading the thumbnail " + request.url, e);
+            return null;
+        }
+    }
+
+    /**
+     * Downloads an image, stopping as soon as its request is cancelled.
+     *
+     * @param request is the request being loaded.
+     * @return the bytes of the image, or null if it could not be downloaded.
+     * @throws IOException
+     */
+    private byte[] download(Request request) throws IOException {
+        HttpTransport.Response response = transport.get(new URL(request.url), null, null);
+        try {
+            if (response.code != 200 || response.body == null) {
+                Log.e(LOG_TAG, "Error response code " + response.code + " for the thumbnail " + request.url);
+                return null;
+            }
+            ByteArrayOutputStream image = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = response.body.read(buffer)) != -1) {
+                if (request.cancelled) throw new InterruptedIOException("The thumbnail is no longer needed");
+                image.write(buffer, 0, count);
+                if (image.size() > MAX_IMAGE_BYTES) {
+                    Log.e(LOG_TAG, "The thumbnail " + request.url + " is too large");
+                    return null;
+                }
+            }
+            return image.toByteArray();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Stores a downloaded image in the disk cache, and evicts old images if the cache has grown
+     * beyond its size limit.
+     *
+     * @param file  is the file for the image.
+     * @param image are the bytes of the image.
+     * @return true if the image has been stored, false otherwise.
+     */
+    private boolean store(File file, byte[] image) {
+        if (!directory.exists() && !directory.mkdirs()) return false;
+
+        // Write to a temporary file first, so a failure never leaves a half-written image.
+        File tmp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(image);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) return false;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem storing the thumbnail.", e);
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // Nothing else can be done here.
+                }
+            }
+            if (tmp.exists()) tmp.delete();
+        }
+
+        synchronized (this) {
+            NewsCache.trimToSize(directory, maxDiskBytes);
+        }
+        return true;
+    }
+
+    /**
+     * Decodes an image file downsampled to the given size.
+     */
+    private static Bitmap decodeFile(File file, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        prepareOptions(options, width, height);
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    /**
+     * Decodes an image in memory downsampled to the given size.
+     */
+    private static Bitmap decodeBytes(byte[] image, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        prepareOptions(options, width, height);
+        return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+    }
+
+    /**
+     * Prepares the options for decoding an image whose bounds have already been read: the image
+     * is downsampled, and decoded without alpha channel, which halves the memory of every bitmap.
+     *
+     * @param options are the options with the bounds of the image.
+     * @param width   is the width of the view, in pixels.
+     * @param height  is the height of the view, in pixels.
+     */
+    private static void prepareOptions(BitmapFactory.Options options, int width, int height) {
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * Returns the largest power of two by which an image can be downsampled while still covering
+     * the requested size.
+     *
+     * @param imageWidth  is the width of the image.
+     * @param imageHeight is the height of the image.
+     * @param width       is the requested width.
+     * @param height      is the requested height.
+     * @return the sample size for {@link BitmapFactory.Options#inSampleSize}.
+     */
+    static int calculateInSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int inSampleSize = 1;
+        if (width <= 0 || height <= 0) return inSampleSize;
+        while (imageWidth / (inSampleSize * 2) >= width && imageHeight / (inSampleSize * 2) >= height) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Process;
+import android.support.v4.content.ContextCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Text layouts of the titles of the list of news, ready to be drawn by a {@link TitleView}.
+ * <p>
+ * Measuring a title and breaking it into lines is the most expensive part of binding a row, so
+ * layouts are computed on a background thread for every news of the list as soon as the list is
+ * known, and kept in memory. Binding a row then just attaches the ready layout, and only a title
+ * that has not been computed yet is laid out on the UI thread.
+ */
+class TitleLayouts {
+    private static final String LOG_TAG = TitleLayouts.class.getSimpleName();
+
+    // Maximum number of layouts kept in memory, and computed ahead for a single list.
+    private static final int MAX_LAYOUTS = 200;
+
+    // Thread for computing layouts off the main thread.
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, LOG_TAG);
+        }
+    });
+
+    private final TextPaint paint;                  // Paint of the layouts built on the UI thread.
+    private final TextPaint backgroundPaint;        // Paint of the layouts built in the background.
+    private final LruCache<String, StaticLayout> layouts = new LruCache<>(MAX_LAYOUTS);
+    private final AtomicInteger generation = new AtomicInteger();   // Latest precomputation.
+
+    /**
+     * Constructs a new {@link TitleLayouts}, with the style of the titles of the list.
+     *
+     * @param context of the app.
+     */
+    TitleLayouts(Context context) {
+        Resources resources = context.getResources();
+        paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(resources.getDimension(R.dimen.title_text_size));
+        paint.setColor(ContextCompat.getColor(context, R.color.colorPrimaryDark));
+        paint.setTypeface(Typeface.create("sans-serif-medium", Typeface.BOLD));
+
+        // A paint is not meant to be used by two threads at once.
+        backgroundPaint = new TextPaint();
+        backgroundPaint.set(paint);
+    }
+
+    /**
+     * Returns the layout of a title for the given width, laying it out on the calling thread if it
+     * has not been computed yet.
+     *
+     * @param title is the title of a news.
+     * @param width is the width available for the text, in pixels.
+     * @return the layout of the title.
+     */
+    StaticLayout obtain(String title, int width) {
+        StaticLayout layout = layouts.get(title);
+        if (layout != null && layout.getWidth() == width) {
+            Metrics.titleLayoutHits.incrementAndGet();
+            return layout;
+        }
+        Metrics.titleLayoutMisses.incrementAndGet();
+        layout = build(title, width, paint);
+        layouts.put(title, layout);
+        return layout;
+    }
+
+    /**
+     * Computes the layouts of the titles of a list of news on a background thread, in the order of
+     * the list, so the first rows are ready first. Any precomputation still running for a previous
+     * list is abandoned.
+     *
+     * @param news               is the list of news.
+     * @param width              is the width available for a title, in pixels.
+     * @param widthWithThumbnail is the width available for the title of a news with thumbnail.
+     */
+    void precompute(final List<News> news, final int width, final int widthWithThumbnail) {
+        final int precomputeGeneration = generation.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int count = Math.min(news.size(), MAX_LAYOUTS);
+                for (int i = 0; i < count && generation.get() == precomputeGeneration; i++) {
+                    News currentNews = news.get(i);
+                    String title = currentNews.getTitle();
+                    int titleWidth = currentNews.getThumbnail().isEmpty() ? width : widthWithThumbnail;
+                    StaticLayout layout = layouts.get(title);
+                    if (title.isEmpty() || (layout != null && layout.getWidth() == titleWidth)) continue;
+                    layouts.put(title, build(title, titleWidth, backgroundPaint));
+                }
+            }
+        });
+    }
+
+    /**
+     * Lays out a title in capital letters, breaking it into lines that fit in the given width.
+     *
+     * @param title is the title of a news.
+     * @param width is the width available for the text, in pixels.
+     * @param paint is the paint of the text.
+     * @return the layout of the title.
+     */
+    @SuppressWarnings("deprecation")
+    private static StaticLayout build(String title, int width, TextPaint paint) {
+        // StaticLayout.Builder is only available from API level 23.
+        return new StaticLayout(title.toUpperCase(Locale.getDefault()), paint, Math.max(0, width),
+                Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+}
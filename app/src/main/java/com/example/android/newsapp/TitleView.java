@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.StaticLayout;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Shows the title of a news in a layout taken from {@link TitleLayouts}, which has usually been
+ * computed on a background thread, so measuring the view doesn't measure any text.
+ */
+public class TitleView extends View {
+    private TitleLayouts layouts;   // Source of the layouts, or null until a title is set.
+    private String title = "";      // Title shown.
+    private StaticLayout layout;    // Layout of the title for the current width, or null.
+
+    public TitleView(Context context) {
+        super(context);
+    }
+
+    public TitleView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    /**
+     * Sets the title shown by the view. Its layout is taken from the given {@link TitleLayouts}
+     * once the width of the view is known.
+     *
+     * @param title   is the title of a news.
+     * @param layouts are the layouts of the titles of the list.
+     */
+    void setTitle(String title, TitleLayouts layouts) {
+        if (title.equals(this.title) && layouts == this.layouts) return;
+        this.title = title;
+        this.layouts = layouts;
+        layout = null;
+        setContentDescription(title);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int textWidth = width - getPaddingLeft() - getPaddingRight();
+        if (layouts != null && (layout == null || layout.getWidth() != textWidth))
+            layout = layouts.obtain(title, textWidth);
+        int height = getPaddingTop() + getPaddingBottom() + (layout != null ? layout.getHeight() : 0);
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (layout == null) return;
+        int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        layout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
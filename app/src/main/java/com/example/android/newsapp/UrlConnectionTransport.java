@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link HttpTransport} based on {@link HttpURLConnection}. Responses are requested gzip
+ * compressed, and connections are never disconnected explicitly: closing a fully read response
+ * returns its connection to the keep-alive pool shared by every {@link HttpURLConnection}.
+ * <p>
+ * Every request records its connection, including the DNS lookup, time to first byte and body read
+ * time in {@link Metrics}, and its throughput in {@link Throughput}, unless the transport is built
+ * without recording, for requests that are not to the news API.
+ */
+class UrlConnectionTransport implements HttpTransport {
+    // Maximum number of bytes read from an unconsumed body when closing a response. Larger bodies
+    // are not worth draining just to keep the connection alive.
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final int connectTimeout;   // Timeout for establishing a connection, in milliseconds.
+    private final int readTimeout;      // Timeout for reading from a connection, in milliseconds.
+    private final boolean recording;    // Whether requests are recorded in the metrics.
+
+    /**
+     * Constructs a new {@link UrlConnectionTransport} that records every request.
+     *
+     * @param connectTimeout is the timeout for establishing a connection, in milliseconds.
+     * @param readTimeout    is the timeout for reading from a connection, in milliseconds.
+     * @param maxConnections is the maximum number of idle connections kept alive for reuse.
+     */
+    UrlConnectionTransport(int connectTimeout, int readTimeout, int maxConnections) {
+        this(connectTimeout, readTimeout, maxConnections, true);
+    }
+
+    /**
+     * Constructs a new {@link UrlConnectionTransport}.
+     *
+     * @param connectTimeout is the timeout for establishing a connection, in milliseconds.
+     * @param readTimeout    is the timeout for reading from a connection, in milliseconds.
+     * @param maxConnections is the maximum number of idle connections kept alive for reuse.
+     * @param recording      is whether requests are recorded in {@link Metrics} and
+     *                       {@link Throughput}.
+     */
+    UrlConnectionTransport(int connectTimeout, int readTimeout, int maxConnections, boolean recording) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.recording = recording;
+
+        // The connection pool reads its configuration from these system properties when the first
+        // connection is opened.
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+    }
+
+    @Override
+    public Response get(URL url, String etag, String lastModified) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(readTimeout);
+        urlConnection.setConnectTimeout(connectTimeout);
+        urlConnection.setRequestMethod("GET");
+
+        // Setting "Accept-Encoding" explicitly disables transparent decompression, so the body is
+        // decoded below according to the "Content-Encoding" of the response.
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        if (etag != null) urlConnection.setRequestProperty("If-None-Match", etag);
+        if (lastModified != null)
+            urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+
+        try {
+            // HttpURLConnection resolves the host while connecting, so the DNS lookup is timed as
+            // part of the connection. Both take no time at all when a pooled connection is reused.
+            long start = System.nanoTime();
+            urlConnection.connect();
+            if (recording) Metrics.connect.record(Metrics.elapsedMicros(start));
+
+            start = System.nanoTime();
+            int code = urlConnection.getResponseCode();
+            if (recording) Metrics.timeToFirstByte.record(Metrics.elapsedMicros(start));
+
+            InputStream body = code < 400 ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+            if (body != null && recording) body = new MeteredInputStream(body);
+            if (body != null && "gzip".equalsIgnoreCase(urlConnection.getContentEncoding()))
+                body = new GZIPInputStream(body);
+            return new UrlConnectionResponse(code, body, urlConnection.getHeaderField("ETag"),
+                    urlConnection.getHeaderField("Last-Modified"), urlConnection.getHeaderField("Retry-After"));
+        } catch (IOException e) {
+            // The connection is in an unknown state, so it must not go back to the pool.
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Stream that counts the bytes read from the network and the time spent reading them, and
+     * records both in {@link Metrics} and {@link Throughput} when closed. It wraps the raw body, so the bytes are counted
+     * as received, before decompression.
+     */
+    private static class MeteredInputStream extends FilterInputStream {
+        private long bytes;         // Number of bytes read.
+        private long readNanos;     // Time spent in read calls, in nanoseconds.
+        private boolean closed;     // Whether the metrics have been recorded.
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int value = super.read();
+            readNanos += System.nanoTime() - start;
+            if (value != -1) bytes++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            int count = super.read(buffer, offset, length);
+            readNanos += System.nanoTime() - start;
+            if (count > 0) bytes += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                Metrics.bodyRead.record(readNanos / 1000);
+                Metrics.bytesRead.record(bytes);
+                Throughput.record(bytes, readNanos);
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * {@link Response} whose closing drains the remaining body, so the connection can be reused.
+     */
+    private static class UrlConnectionResponse extends Response {
+        UrlConnectionResponse(int code, InputStream body, String etag, String lastModified, String retryAfter) {
+            super(code, body, etag, lastModified, retryAfter);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body == null) return;
+            try {
+                byte[] buffer = new byte[4096];
+                int drained = 0;
+                int count;
+                while (drained < MAX_DRAIN_BYTES && (count = body.read(buffer)) != -1) {
+                    drained += count;
+                }
+            } finally {
+                body.close();
+            }
+        }
+    }
+}
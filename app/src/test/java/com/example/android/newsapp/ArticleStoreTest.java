@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleStoreTest {
+    private static final String URL = "https://www.theguardian.com/world/1";
+
+    // Offset of the length of the body: the version and the URL.
+    private static final int LENGTH_OFFSET = 4 + 2 + URL.length();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ArticleStore store;
+    private String body;
+
+    @Before
+    public void createStore() {
+        store = new ArticleStore(folder.getRoot(), 1024 * 1024);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) text.append("Spain swelters as temperatures hit record highs. ");
+        text.append("Erdo\u011fan\u2019s \u201ccrisis\u201d \ud83d\udd25");
+        body = text.toString();
+        store.put(URL, body);
+    }
+
+    /**
+     * Overwrites the length of the stored body.
+     */
+    private void writeLength(int length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), NewsCache.fileNameFor(URL)), "rw");
+        try {
+            file.seek(LENGTH_OFFSET);
+            file.writeInt(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void storedBodyIsReadBack() {
+        assertTrue(store.contains(URL));
+        assertEquals(body, store.get(URL));
+    }
+
+    @Test
+    public void offsetPointsToTheLength() throws IOException {
+        writeLength(body.length());
+        assertEquals(body, store.get(URL));
+    }
+
+    @Test
+    public void hugeLengthIsMissing() throws IOException {
+        writeLength(Integer.MAX_VALUE);
+        assertNull(store.get(URL));
+    }
+
+    @Test
+    public void negativeLengthIsMissing() throws IOException {
+        writeLength(-1);
+        assertNull(store.get(URL));
+    }
+
+    @Test
+    public void longerLengthIsTruncated() throws IOException {
+        writeLength(body.length() + 1);
+        assertNull(store.get(URL));
+    }
+}
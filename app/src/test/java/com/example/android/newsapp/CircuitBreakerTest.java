@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+    private static final long OPEN_MILLIS = 50;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+    private static NewsFetchException transientFailure() {
+        return NewsFetchException.forResponse(503, NewsFetchException.NO_RETRY_AFTER);
+    }
+
+    private void failTransiently(int times) throws NewsFetchException {
+        for (int i = 0; i < times; i++) {
+            breaker.acquire();
+            breaker.onFailure(transientFailure());
+        }
+    }
+
+    /**
+     * Asserts that the circuit is open, and returns the time left until the next probe.
+     */
+    private long assertOpen() {
+        try {
+            breaker.acquire();
+            fail("The circuit is closed");
+            return 0;
+        } catch (NewsFetchException e) {
+            assertEquals(NewsFetchException.Kind.CIRCUIT_OPEN, e.kind);
+            return e.retryAfterMillis;
+        }
+    }
+
+    @Test
+    public void opensAfterTheThresholdOfTransientFailures() throws NewsFetchException {
+        failTransiently(2);
+        breaker.acquire();
+        breaker.onFailure(transientFailure());
+
+        long retryAfter = assertOpen();
+        assertTrue(retryAfter >= 0 && retryAfter <= OPEN_MILLIS);
+    }
+
+    @Test
+    public void successResetsTheFailures() throws NewsFetchException {
+        failTransiently(2);
+        breaker.acquire();
+        breaker.onSuccess();
+        failTransiently(2);
+        breaker.acquire();
+    }
+
+    @Test
+    public void nonTransientFailuresDoNotCount() throws NewsFetchException {
+        for (int i = 0; i < 10; i++) {
+            breaker.acquire();
+            breaker.onFailure(NewsFetchException.forResponse(404, NewsFetchException.NO_RETRY_AFTER));
+        }
+        breaker.acquire();
+    }
+
+    @Test
+    public void letsASingleProbeThroughOnceTheOpenTimeHasPassed() throws Exception {
+        failTransiently(3);
+        Thread.sleep(OPEN_MILLIS + 10);
+
+        breaker.acquire();
+        assertOpen();
+        breaker.onSuccess();
+        breaker.acquire();
+        breaker.acquire();
+    }
+
+    @Test
+    public void failedProbeOpensTheCircuitAgain() throws Exception {
+        failTransiently(3);
+        Thread.sleep(OPEN_MILLIS + 10);
+
+        breaker.acquire();
+        breaker.onFailure(transientFailure());
+        assertOpen();
+    }
+
+    @Test
+    public void abandonedProbeIsReplaced() throws Exception {
+        failTransiently(3);
+        Thread.sleep(OPEN_MILLIS + 10);
+        breaker.acquire();
+        assertOpen();
+
+        Thread.sleep(OPEN_MILLIS + 10);
+        breaker.acquire();
+    }
+
+    @Test
+    public void rateLimitedFailureOpensTheCircuitAtOnce() throws Exception {
+        breaker.acquire();
+        breaker.onFailure(NewsFetchException.forResponse(429, 200));
+
+        long retryAfter = assertOpen();
+        assertTrue(retryAfter > OPEN_MILLIS && retryAfter <= 200);
+        Thread.sleep(250);
+        breaker.acquire();
+    }
+}
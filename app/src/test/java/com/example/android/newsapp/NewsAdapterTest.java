@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NewsAdapterTest {
+    private static final List<News> NEWS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < 5; i++) {
+            NEWS.add(new News("Title " + i, "World news", "https://www.theguardian.com/world/" + i, "",
+                    News.NO_AUTHORS, 1499275886000L - i));
+        }
+    }
+
+    @Test
+    public void appendedListIsAContinuation() {
+        assertTrue(NewsAdapter.isContinuation(NEWS.subList(0, 3), NEWS));
+        assertTrue(NewsAdapter.isContinuation(NEWS, new ArrayList<>(NEWS)));
+    }
+
+    @Test
+    public void reorderedNewsBetweenTheEndsIsNotAContinuation() {
+        // As a list sorted by title may come after a new news is loaded.
+        List<News> reordered = Arrays.asList(NEWS.get(0), NEWS.get(2), NEWS.get(1), NEWS.get(3), NEWS.get(4));
+        assertFalse(NewsAdapter.isContinuation(NEWS.subList(0, 4), reordered));
+    }
+
+    @Test
+    public void newsReplacedBetweenTheEndsIsNotAContinuation() {
+        List<News> replaced = Arrays.asList(NEWS.get(0), NEWS.get(1), NEWS.get(4), NEWS.get(3));
+        assertFalse(NewsAdapter.isContinuation(NEWS.subList(0, 4), replaced));
+    }
+
+    @Test
+    public void equalButDistinctNewsIsNotAContinuation() {
+        News first = NEWS.get(0);
+        List<News> copy = new ArrayList<>(NEWS);
+        copy.set(0, new News(first.getTitle(), first.getSection(), first.getUrl(), first.getThumbnail(),
+                first.getAuthorList(), first.getPublishedAt()));
+        assertFalse(NewsAdapter.isContinuation(NEWS, copy));
+    }
+
+    @Test
+    public void emptyOrShorterListIsNotAContinuation() {
+        assertFalse(NewsAdapter.isContinuation(Collections.<News>emptyList(), NEWS));
+        assertFalse(NewsAdapter.isContinuation(NEWS, NEWS.subList(0, 4)));
+    }
+}
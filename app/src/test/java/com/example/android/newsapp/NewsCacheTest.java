@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NewsCacheTest {
+    private static final String URL = "https://content.guardianapis.com/search?api-key=test&page=1";
+    private static final String TITLE = "Spain swelters as temperatures hit record highs";
+    private static final String SECTION = "World news";
+    private static final String NEWS_URL = "https://www.theguardian.com/world/1";
+
+    // Offset of the number of news: the version, the URL, two absent validators and the time.
+    private static final int COUNT_OFFSET = 4 + 2 + URL.length() + 1 + 1 + 8;
+
+    // Offset of the number of authors of the first news: its title, section, URL and thumbnail.
+    private static final int AUTHOR_COUNT_OFFSET = COUNT_OFFSET + 4 + 2 + TITLE.length() + 2 + SECTION.length()
+            + 2 + NEWS_URL.length() + 2;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private NewsCache cache;
+
+    @Before
+    public void createCache() {
+        cache = new NewsCache(folder.getRoot(), 60 * 1000, 1024 * 1024);
+        List<News> news = Collections.singletonList(new News(TITLE, SECTION, NEWS_URL, "",
+                new String[]{"Sam Jones", "Stephen Burgen"}, 1499275886000L));
+        cache.put(URL, news, null, null);
+    }
+
+    /**
+     * Overwrites an int of the file of the cached entry.
+     */
+    private void writeInt(int offset, int value) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), NewsCache.fileNameFor(URL)), "rw");
+        try {
+            file.seek(offset);
+            file.writeInt(value);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void storedNewsAreReadBack() {
+        NewsCache.Entry entry = cache.get(URL);
+        assertTrue(entry.fresh);
+        assertEquals(1, entry.news.size());
+        assertEquals(TITLE, entry.news.get(0).getTitle());
+        assertArrayEquals(new String[]{"Sam Jones", "Stephen Burgen"}, entry.news.get(0).getAuthorList());
+    }
+
+    @Test
+    public void offsetsPointToTheCounts() throws IOException {
+        // The same counts, written again, leave the entry as it was.
+        writeInt(COUNT_OFFSET, 1);
+        writeInt(AUTHOR_COUNT_OFFSET, 2);
+        assertEquals(1, cache.get(URL).news.size());
+    }
+
+    @Test
+    public void hugeCountIsAMiss() throws IOException {
+        writeInt(COUNT_OFFSET, Integer.MAX_VALUE);
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    public void negativeCountIsAMiss() throws IOException {
+        writeInt(COUNT_OFFSET, -1);
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    public void hugeAuthorCountIsAMiss() throws IOException {
+        writeInt(AUTHOR_COUNT_OFFSET, Integer.MAX_VALUE);
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    public void negativeAuthorCountIsAMiss() throws IOException {
+        writeInt(AUTHOR_COUNT_OFFSET, -5);
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    public void missingEntryIsAMiss() {
+        assertNull(cache.get(URL + "&page=2"));
+    }
+}
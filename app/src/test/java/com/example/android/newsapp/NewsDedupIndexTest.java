@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NewsDedupIndexTest {
+    private static final long DATE = 1499275886000L;
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private final NewsDedupIndex index = new NewsDedupIndex();
+    private int urls;
+
+    private News news(String title, long publishedAt) {
+        return new News(title, "World news", "https://www.theguardian.com/world/" + urls++, "",
+                News.NO_AUTHORS, publishedAt);
+    }
+
+    @Test
+    public void sameUrlIsADuplicate() {
+        News news = news("Spain swelters as temperatures hit record highs", DATE);
+        assertTrue(index.add(news));
+        assertFalse(index.add(new News("Another title altogether", "Football", news.getUrl(), "",
+                News.NO_AUTHORS, DATE + 100 * HOUR)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void titleDifferingInCaseAndPunctuationIsADuplicate() {
+        assertTrue(index.add(news("Spain swelters as temperatures hit record highs", DATE)));
+        assertFalse(index.add(news("SPAIN SWELTERS: as temperatures hit record highs!", DATE + HOUR)));
+    }
+
+    @Test
+    public void retitledCopyIsADuplicate() {
+        assertTrue(index.add(news("Spain swelters as temperatures hit record highs across the country "
+                + "and Madrid braces for a second heatwave", DATE)));
+        assertFalse(index.add(news("Spain swelters as temperatures hit record highs across the country "
+                + "and Madrid braces for a second heat wave", DATE)));
+    }
+
+    @Test
+    public void differentStoriesAreKept() {
+        assertTrue(index.add(news("Spain swelters as temperatures hit record highs", DATE)));
+        assertTrue(index.add(news("Madrid swelters as the heatwave goes on", DATE)));
+        assertTrue(index.add(news("Erdogan accuses protesters of supporting terrorism", DATE)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void copiesPublishedMoreThanADayApartAreKept() {
+        String title = "Spain swelters as temperatures hit record highs";
+        assertTrue(index.add(news(title, DATE)));
+        assertFalse(index.add(news(title, DATE + 24 * HOUR)));
+        assertTrue(index.add(news(title, DATE + 25 * HOUR)));
+        assertFalse(index.add(news(title, News.UNKNOWN_DATE)));
+    }
+
+    @Test
+    public void shortTitlesAreNotCompared() {
+        assertTrue(index.add(news("Live updates", DATE)));
+        assertTrue(index.add(news("Live updates", DATE)));
+        assertFalse(NewsDedupIndex.computeSignature("Live  --  updates!", new int[NewsDedupIndex.SIGNATURE_SIZE]));
+    }
+
+    @Test
+    public void addAllSkipsDuplicatesWithinTheList() {
+        News first = news("Spain swelters as temperatures hit record highs", DATE);
+        News second = news("Erdogan accuses protesters of supporting terrorism", DATE);
+        List<News> added = index.addAll(Arrays.asList(first,
+                news("Spain swelters as temperatures hit record highs", DATE), second, first));
+        assertEquals(Arrays.asList(first, second), added);
+    }
+
+    @Test
+    public void truncatedNewsCanBeAddedAgain() {
+        Random random = new Random(1);
+        List<News> list = new ArrayList<>();
+        for (int i = 0; i < 100; i++) list.add(news(randomTitle(random), DATE));
+        assertEquals(100, index.addAll(list).size());
+
+        // Down to fewer news than when the tables last grew.
+        index.truncate(10);
+        assertEquals(10, index.size());
+        for (int i = 0; i < 10; i++) assertFalse(index.add(list.get(i)));
+        for (int i = 10; i < 100; i++) assertTrue(index.add(list.get(i)));
+        assertEquals(100, index.size());
+    }
+
+    @Test
+    public void matchesComparingEverySignature() {
+        // Titles made of few words, so that many of them are near duplicates.
+        String[] words = {"spain", "swelters", "as", "temperatures", "hit", "record", "highs", "lows",
+                "across", "the", "country"};
+        Random random = new Random(1);
+        List<int[]> kept = new ArrayList<>();
+        List<Long> keptDates = new ArrayList<>();
+        int duplicates = 0;
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder title = new StringBuilder("Heatwave: spain swelters as temperatures hit record");
+            for (int j = random.nextInt(3); j > 0; j--) title.append(' ').append(words[random.nextInt(words.length)]);
+            long date = DATE + random.nextInt(72) * HOUR;
+            int[] signature = new int[NewsDedupIndex.SIGNATURE_SIZE];
+            NewsDedupIndex.computeSignature(title.toString(), signature);
+
+            boolean duplicate = false;
+            for (int k = 0; k < kept.size() && !duplicate; k++) {
+                int equal = 0;
+                for (int h = 0; h < signature.length; h++) {
+                    if (kept.get(k)[h] == signature[h]) equal++;
+                }
+                duplicate = equal >= 0.8 * signature.length && Math.abs(date - keptDates.get(k)) <= 24 * HOUR;
+            }
+
+            assertEquals(title.toString(), !duplicate, index.add(news(title.toString(), date)));
+            if (duplicate) {
+                duplicates++;
+            } else {
+                kept.add(signature);
+                keptDates.add(date);
+            }
+        }
+        assertTrue(duplicates > 1000);
+        assertTrue(kept.size() > 10);
+    }
+
+    /**
+     * Returns a title of random letters, which is unlike any other.
+     */
+    private static String randomTitle(Random random) {
+        char[] title = new char[40];
+        for (int i = 0; i < title.length; i++) title[i] = i % 8 == 7 ? ' ' : (char) ('a' + random.nextInt(26));
+        return new String(title);
+    }
+
+    @Test
+    public void signatureIgnoresCaseAndSeparators() {
+        int[] a = new int[NewsDedupIndex.SIGNATURE_SIZE];
+        int[] b = new int[NewsDedupIndex.SIGNATURE_SIZE];
+        assertTrue(NewsDedupIndex.computeSignature("Spain swelters as temperatures hit record highs", a));
+        assertTrue(NewsDedupIndex.computeSignature("  spain -- SWELTERS as temperatures, hit record highs.", b));
+        assertArrayEquals(a, b);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NewsFieldParserTest {
+    private final NewsFieldParser parser = new NewsFieldParser();
+
+    @Test
+    public void parsesUtcDates() {
+        assertEquals(0L, parser.parseDateTime("1970-01-01T00:00:00Z"));
+        assertEquals(1499275886000L, parser.parseDateTime("2017-07-05T17:31:26Z"));
+        assertEquals(951782400000L, parser.parseDateTime("2000-02-29T00:00:00Z"));
+        assertEquals(-1000L, parser.parseDateTime("1969-12-31T23:59:59Z"));
+    }
+
+    @Test
+    public void ignoresFractionsOfASecond() {
+        assertEquals(1499275886000L, parser.parseDateTime("2017-07-05T17:31:26.123Z"));
+    }
+
+    @Test
+    public void matchesSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(1);
+
+        // From 1901 to 2099, across leap years and the turn of the century.
+        for (int i = 0; i < 2000; i++) {
+            long timestamp = (long) ((random.nextDouble() - 0.35) * 6200000000L) * 1000;
+            String date = format.format(timestamp);
+            assertEquals(date, timestamp, parser.parseDateTime(date));
+        }
+    }
+
+    @Test
+    public void incompleteDatesAreUnknown() {
+        assertEquals(News.UNKNOWN_DATE, parser.parseDateTime(""));
+        assertEquals(News.UNKNOWN_DATE, parser.parseDateTime("2017-07-05"));
+        assertEquals(News.UNKNOWN_DATE, parser.parseDateTime("2017-07-05T17:31Z"));
+        assertEquals(News.UNKNOWN_DATE, parser.parseDateTime("yesterday"));
+    }
+
+    @Test
+    public void parsesAuthorIds() {
+        assertEquals("Sam Jones", parser.parseAuthor("profile/sam-jones"));
+        assertEquals("Jean Paul Sartre", parser.parseAuthor("profile/jean-paul-sartre/"));
+        assertEquals("Agencies", parser.parseAuthor("profile/agencies"));
+        assertEquals("", parser.parseAuthor("profile/"));
+    }
+
+    @Test
+    public void internsAuthors() {
+        String parsed = parser.parseAuthor("profile/stephen-burgen");
+        assertSame(parsed, new NewsFieldParser().parseAuthor("profile/stephen-burgen"));
+        assertSame(parsed, parser.internAuthor(new String("Stephen Burgen")));
+    }
+
+    @Test
+    public void collectsTheAuthorsOfEveryNews() {
+        parser.beginAuthors();
+        for (int i = 0; i < 6; i++) parser.addAuthor("profile/author-" + i);
+        parser.addAuthor("profile/");
+        String[] authors = parser.endAuthors();
+        assertEquals(6, authors.length);
+        assertEquals("Author 5", authors[5]);
+
+        parser.beginAuthors();
+        assertSame(News.NO_AUTHORS, parser.endAuthors());
+        parser.beginAuthors();
+        parser.addAuthor("profile/sam-jones");
+        assertArrayEquals(new String[]{"Sam Jones"}, parser.endAuthors());
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NewsIndexTest {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static final List<News> NEWS = Arrays.asList(
+            new News("Spain swelters as temperatures hit record highs", "World news", "https://a/0", "",
+                    new String[]{"Sam Jones", "Stephen Burgen"}, 10 * HOUR),
+            new News("Erdogan accuses protesters of terrorism", "World news", "https://a/1", "",
+                    new String[]{"Stephen Burgen"}, 12 * HOUR),
+            new News("Arsenal sign striker", "Football", "https://a/2", "",
+                    new String[]{"Sam Jones"}, 10 * HOUR),
+            new News("arsenal lose again", "football", "https://a/3", "", News.NO_AUTHORS, 8 * HOUR),
+            new News("Heatwave: what the record temperatures mean", "Environment", "https://a/4", "",
+                    News.NO_AUTHORS, News.UNKNOWN_DATE));
+
+    private final NewsIndex index = new NewsIndex(NEWS);
+
+    private static NewsIndex.Filter filter() {
+        return new NewsIndex.Filter();
+    }
+
+    @Test
+    public void defaultFilterReturnsEveryNewsNewestFirst() {
+        assertTrue(filter().isDefault());
+        // News published at the same time keep the order of the list.
+        assertArrayEquals(new int[]{1, 0, 2, 3, 4}, index.query(filter()));
+    }
+
+    @Test
+    public void resultsAreACopyOfTheOrder() {
+        int[] results = index.query(filter());
+        results[0] = -1;
+        assertEquals(1, index.order(NewsIndex.Order.NEWEST)[0]);
+    }
+
+    @Test
+    public void filtersBySectionsAndAuthors() {
+        NewsIndex.Filter filter = filter();
+        filter.sections = new HashSet<>(Arrays.asList("World news", "Football", "Sport"));
+        assertArrayEquals(new int[]{1, 0, 2}, index.query(filter));
+
+        filter.authors = Collections.singleton("Sam Jones");
+        assertArrayEquals(new int[]{0, 2}, index.query(filter));
+        assertFalse(filter.isDefault());
+    }
+
+    @Test
+    public void dateRangeIsInclusive() {
+        NewsIndex.Filter filter = filter();
+        filter.fromDate = 8 * HOUR;
+        filter.toDate = 10 * HOUR;
+        assertArrayEquals(new int[]{0, 2, 3}, index.query(filter));
+
+        filter.fromDate = 11 * HOUR;
+        filter.toDate = 11 * HOUR;
+        assertEquals(0, index.query(filter).length);
+    }
+
+    @Test
+    public void textMatchesThePrefixesOfEveryWord() {
+        NewsIndex.Filter filter = filter();
+        filter.text = "TEMP";
+        assertArrayEquals(new int[]{0, 4}, index.query(filter));
+        filter.text = "record, temperatures hi";
+        assertArrayEquals(new int[]{0}, index.query(filter));
+        filter.text = "arsenal tottenham";
+        assertEquals(0, index.query(filter).length);
+
+        filter.text = " -- ";
+        assertTrue(filter.isDefault());
+    }
+
+    @Test
+    public void sortsByTitleAndSectionIgnoringCase() {
+        NewsIndex.Filter filter = filter();
+        filter.order = NewsIndex.Order.TITLE;
+        assertArrayEquals(new int[]{3, 2, 1, 4, 0}, index.query(filter));
+
+        // Within a section, newest first.
+        filter.order = NewsIndex.Order.SECTION;
+        assertArrayEquals(new int[]{4, 2, 3, 1, 0}, index.query(filter));
+
+        filter.order = NewsIndex.Order.OLDEST;
+        assertArrayEquals(new int[]{4, 3, 2, 0, 1}, index.query(filter));
+    }
+
+    @Test
+    public void listsSectionsAndAuthorsAlphabetically() {
+        // Sections differing in case only may come in any order.
+        List<String> sections = index.getSections();
+        assertEquals(4, sections.size());
+        assertEquals("Environment", sections.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("football", "Football")), new HashSet<>(sections.subList(1, 3)));
+        assertEquals("World news", sections.get(3));
+        assertEquals(Arrays.asList("Sam Jones", "Stephen Burgen"), index.getAuthors());
+    }
+
+    @Test
+    public void emptyIndexReturnsNothing() {
+        NewsIndex empty = new NewsIndex(Collections.<News>emptyList());
+        NewsIndex.Filter filter = filter();
+        filter.text = "spain";
+        assertEquals(0, empty.query(filter()).length);
+        assertEquals(0, empty.query(filter).length);
+    }
+
+    @Test
+    public void matchesFilteringAndSortingEveryNews() {
+        String[] sections = {"World news", "Football", "Politics", "Environment"};
+        String[] authors = {"Sam Jones", "Stephen Burgen", "Jessica Elgot"};
+        String[] words = {"spain", "Spanish", "heat", "heatwave", "record", "Arsenal", "vote", "2017"};
+        Random random = new Random(1);
+
+        List<News> list = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int j = 1 + random.nextInt(4); j > 0; j--) title.append(words[random.nextInt(words.length)]).append(' ');
+            String[] newsAuthors = random.nextInt(4) == 0 ? News.NO_AUTHORS
+                    : new String[]{authors[random.nextInt(authors.length)]};
+            list.add(new News(title.toString(), sections[random.nextInt(sections.length)], "https://a/" + i, "",
+                    newsAuthors, random.nextInt(50) * HOUR));
+        }
+        NewsIndex index = new NewsIndex(list);
+
+        for (int i = 0; i < 500; i++) {
+            NewsIndex.Filter filter = filter();
+            if (random.nextBoolean()) filter.sections = Collections.singleton(sections[random.nextInt(sections.length)]);
+            if (random.nextInt(3) == 0) filter.authors = Collections.singleton(authors[random.nextInt(authors.length)]);
+            if (random.nextBoolean()) {
+                filter.fromDate = random.nextInt(50) * HOUR;
+                filter.toDate = filter.fromDate + random.nextInt(20) * HOUR;
+            }
+            if (random.nextBoolean()) filter.text = words[random.nextInt(words.length)].substring(0, 3);
+            filter.order = NewsIndex.Order.values()[random.nextInt(NewsIndex.Order.values().length)];
+
+            assertArrayEquals(bruteForce(list, filter), index.query(filter));
+        }
+    }
+
+    /**
+     * Returns the positions of the news matching a filter, by checking every news and sorting
+     * them.
+     */
+    private static int[] bruteForce(final List<News> list, NewsIndex.Filter filter) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            News news = list.get(i);
+            if (!filter.sections.isEmpty() && !filter.sections.contains(news.getSection())) continue;
+            if (!filter.authors.isEmpty()
+                    && Collections.disjoint(filter.authors, Arrays.asList(news.getAuthorList()))) continue;
+            if (news.getPublishedAt() < filter.fromDate || news.getPublishedAt() > filter.toDate) continue;
+            if (!containsPrefixes(news.getTitle(), filter.text)) continue;
+            positions.add(i);
+        }
+
+        final Comparator<Integer> newest = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long dateA = list.get(a).getPublishedAt();
+                long dateB = list.get(b).getPublishedAt();
+                return dateA != dateB ? (dateA > dateB ? -1 : 1) : a - b;
+            }
+        };
+        switch (filter.order) {
+            case NEWEST:
+                Collections.sort(positions, newest);
+                break;
+            case OLDEST:
+                Collections.sort(positions, Collections.reverseOrder(newest));
+                break;
+            case TITLE:
+            case SECTION:
+                final boolean byTitle = filter.order == NewsIndex.Order.TITLE;
+                Collections.sort(positions, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        News newsA = list.get(a);
+                        News newsB = list.get(b);
+                        int byKey = byTitle
+                                ? newsA.getTitle().compareToIgnoreCase(newsB.getTitle())
+                                : newsA.getSection().compareToIgnoreCase(newsB.getSection());
+                        return byKey != 0 ? byKey : newest.compare(a, b);
+                    }
+                });
+                break;
+        }
+
+        int[] results = new int[positions.size()];
+        for (int i = 0; i < results.length; i++) results[i] = positions.get(i);
+        return results;
+    }
+
+    private static boolean containsPrefixes(String title, String text) {
+        for (String prefix : NewsIndex.words(text)) {
+            boolean found = false;
+            for (String word : NewsIndex.words(title)) found |= word.startsWith(prefix);
+            if (!found) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class NewsQueryTest {
+    private static final String BASE_URL = "https://content.guardianapis.com/search";
+
+    private static NewsQuery.Builder builder() {
+        return new NewsQuery.Builder().baseUrl(BASE_URL);
+    }
+
+    @Test
+    public void defaultQueryAsksForTheFirstPageOfTen() {
+        assertEquals(BASE_URL + "?api-key=test&page=1&page-size=10", builder().build().toUrl());
+    }
+
+    @Test
+    public void parametersAreSortedByName() {
+        NewsQuery query = builder()
+                .terms("brexit")
+                .order(NewsQuery.Order.NEWEST)
+                .showReferences("author")
+                .referenceType("author")
+                .showFields("thumbnail")
+                .pageSize(20)
+                .page(2)
+                .build();
+        assertEquals(BASE_URL + "?api-key=test&order-by=newest&page=2&page-size=20&q=brexit"
+                + "&reference-type=author&show-fields=thumbnail&show-references=author", query.toUrl());
+    }
+
+    @Test
+    public void valuesAreSortedWhateverTheirOrder() {
+        NewsQuery a = builder().sections("world", "football").showFields("thumbnail", "bodyText").build();
+        NewsQuery b = builder().showFields("bodyText", "thumbnail").sections("football", "world").build();
+
+        assertEquals(BASE_URL + "?api-key=test&page=1&page-size=10&section=football%7Cworld"
+                + "&show-fields=bodyText,thumbnail", a.toUrl());
+        assertEquals(a.toUrl(), b.toUrl());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void idsAreJoinedWithCommas() {
+        NewsQuery query = builder().ids(Arrays.asList("world/2017/jul/05/b", "football/2017/jul/05/a")).build();
+        assertEquals(BASE_URL + "?api-key=test&ids=football%2F2017%2Fjul%2F05%2Fa,world%2F2017%2Fjul%2F05%2Fb"
+                + "&page=1&page-size=10", query.toUrl());
+    }
+
+    @Test
+    public void valuesAreEncoded() {
+        NewsQuery query = builder().terms("rock & roll \u00e9t\u00e9").build();
+        assertEquals(BASE_URL + "?api-key=test&page=1&page-size=10&q=rock%20%26%20roll%20%C3%A9t%C3%A9",
+                query.toUrl());
+    }
+
+    @Test
+    public void datesAreFormattedInUtc() {
+        NewsQuery query = builder().fromDate(1499275886000L).toDate(1499300000000L).build();
+        assertEquals(BASE_URL + "?api-key=test&from-date=2017-07-05T17%3A31%3A26Z&page=1&page-size=10"
+                + "&to-date=2017-07-06T00%3A13%3A20Z", query.toUrl());
+    }
+
+    @Test
+    public void emptyValuesAreLeftOut() {
+        NewsQuery query = builder().sections().showFields().showReferences()
+                .fromDate(News.UNKNOWN_DATE).build();
+        assertEquals(builder().build().toUrl(), query.toUrl());
+    }
+
+    @Test
+    public void baseUrlWithParametersIsExtended() {
+        NewsQuery query = new NewsQuery.Builder().baseUrl(BASE_URL + "?format=json").build();
+        assertEquals(BASE_URL + "?format=json&api-key=test&page=1&page-size=10", query.toUrl());
+    }
+
+    @Test
+    public void otherPagesOnlyChangeThePage() {
+        NewsQuery query = builder().terms("brexit").pageSize(50).build();
+
+        assertSame(query, query.forPage(1));
+        assertEquals(builder().terms("brexit").pageSize(50).page(3).build(), query.forPage(3));
+        assertEquals(query, query.forPage(3).forPage(1));
+        assertNotEquals(query, query.forPage(2));
+    }
+
+    @Test
+    public void buildUponKeepsEveryValue() {
+        NewsQuery query = builder()
+                .apiKey("key")
+                .terms("brexit")
+                .sections("politics")
+                .referenceType("author")
+                .showFields("thumbnail")
+                .showReferences("author")
+                .order(NewsQuery.Order.OLDEST)
+                .fromDate(0)
+                .toDate(1499275886000L)
+                .pageSize(200)
+                .page(4)
+                .build();
+        assertEquals(query.toUrl(), query.buildUpon().build().toUrl());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageSizeAboveTheLimitIsRejected() {
+        builder().pageSize(NewsQuery.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageZeroIsRejected() {
+        builder().page(0);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class NewsRequestsTest {
+    private static final String URL = "http://localhost/search?q=owner-cancelled";
+
+    @After
+    public void restoreTransport() {
+        QueryUtils.setTransport(new UrlConnectionTransport(QueryUtils.DEFAULT_CONNECT_TIMEOUT,
+                QueryUtils.DEFAULT_READ_TIMEOUT, QueryUtils.DEFAULT_MAX_CONNECTIONS));
+    }
+
+    @Test
+    public void attachedCallerPerformsRequestWhenOwnerIsInterrupted() throws Exception {
+        List<News> news = Collections.singletonList(new News("Title", "World news",
+                "https://www.theguardian.com/world/1", "", News.NO_AUTHORS, 0));
+        final NewsCache.Entry cached = new NewsCache.Entry(news, "\"etag\"", null, 0, false);
+
+        // The first request blocks until its thread is interrupted; any later one is answered
+        // with "304 Not Modified", so the cached news are returned without parsing anything.
+        final CountDownLatch ownerStarted = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        QueryUtils.setTransport(new HttpTransport() {
+            @Override
+            public Response get(URL url, String etag, String lastModified) throws IOException {
+                if (requests.incrementAndGet() > 1) return new EmptyResponse(304);
+                ownerStarted.countDown();
+                try {
+                    Thread.sleep(60 * 1000);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Cancelled");
+                }
+                throw new IOException("Not interrupted");
+            }
+        });
+
+        final AtomicReference<QueryUtils.NewsResponse> ownerResponse = new AtomicReference<>();
+        Thread owner = new Thread(new Fetch(cached, ownerResponse));
+        owner.start();
+        ownerStarted.await();
+
+        long shared = Metrics.requestsShared.get();
+        final AtomicReference<QueryUtils.NewsResponse> attachedResponse = new AtomicReference<>();
+        Thread attached = new Thread(new Fetch(cached, attachedResponse));
+        attached.start();
+        while (Metrics.requestsShared.get() == shared) Thread.sleep(1);
+
+        owner.interrupt();
+        owner.join();
+        attached.join();
+
+        assertNull(ownerResponse.get());
+        assertSame(news, attachedResponse.get().news);
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Fetches {@link #URL}, keeping the response.
+     */
+    private static class Fetch implements Runnable {
+        private final NewsCache.Entry cached;
+        private final AtomicReference<QueryUtils.NewsResponse> response;
+
+        Fetch(NewsCache.Entry cached, AtomicReference<QueryUtils.NewsResponse> response) {
+            this.cached = cached;
+            this.response = response;
+        }
+
+        @Override
+        public void run() {
+            try {
+                response.set(NewsRequests.fetch(URL, QueryUtils.ParseMode.STREAMING, cached));
+            } catch (NewsFetchException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Response without body.
+     */
+    private static class EmptyResponse extends HttpTransport.Response {
+        EmptyResponse(int code) {
+            super(code, null, null, null, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
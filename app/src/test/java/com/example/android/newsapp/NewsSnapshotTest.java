@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NewsSnapshotTest {
+    private static final String KEY = "https://content.guardianapis.com/search?api-key=test&page=1\n";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<News> sampleNews() {
+        return Arrays.asList(
+                new News("Spain swelters as temperatures hit record highs", "World news",
+                        "https://www.theguardian.com/world/1", "https://media.guim.co.uk/1/500.jpg",
+                        new String[]{"Sam Jones", "Stephen Burgen"}, 1499275886000L),
+                // Dates may go back and forth, and be unknown.
+                new News("Erdo\u011fan\u2019s \u201ccrisis\u201d \u2013 live", "World news",
+                        "https://www.theguardian.com/world/2", "", new String[]{"Stephen Burgen"}, 1499280000000L),
+                new News("No author nor date", "Football", "https://www.theguardian.com/football/3", "",
+                        News.NO_AUTHORS, News.UNKNOWN_DATE),
+                new News("", "", "https://www.theguardian.com/4", "", News.NO_AUTHORS, 0));
+    }
+
+    private static void assertSameNews(List<News> expected, List<News> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            News a = expected.get(i);
+            News b = actual.get(i);
+            assertEquals(a.getTitle(), b.getTitle());
+            assertEquals(a.getSection(), b.getSection());
+            assertEquals(a.getUrl(), b.getUrl());
+            assertEquals(a.getThumbnail(), b.getThumbnail());
+            assertArrayEquals(a.getAuthorList(), b.getAuthorList());
+            assertEquals(a.getPublishedAt(), b.getPublishedAt());
+        }
+    }
+
+    @Test
+    public void encodedSnapshotDecodesToTheSameNews() throws IOException {
+        NewsSnapshot snapshot = new NewsSnapshot(KEY, sampleNews(), 3, true, 1499300000000L);
+        NewsSnapshot decoded = NewsSnapshot.decode(ByteBuffer.wrap(snapshot.encode()));
+
+        assertEquals(KEY, decoded.key);
+        assertEquals(3, decoded.page);
+        assertTrue(decoded.hasMorePages);
+        assertEquals(1499300000000L, decoded.savedAt);
+        assertSameNews(snapshot.news, decoded.news);
+    }
+
+    @Test
+    public void repeatedStringsAreDecodedOnce() throws IOException {
+        NewsSnapshot decoded = NewsSnapshot.decode(ByteBuffer.wrap(
+                new NewsSnapshot(KEY, sampleNews(), 1, false, 0).encode()));
+
+        assertSame(decoded.news.get(0).getSection(), decoded.news.get(1).getSection());
+        assertSame(decoded.news.get(0).getAuthorList()[1], decoded.news.get(1).getAuthorList()[0]);
+        assertSame(News.NO_AUTHORS, decoded.news.get(2).getAuthorList());
+    }
+
+    @Test
+    public void emptySnapshotRoundTrips() throws IOException {
+        NewsSnapshot decoded = NewsSnapshot.decode(ByteBuffer.wrap(
+                new NewsSnapshot(KEY, Arrays.<News>asList(), 1, false, 0).encode()));
+
+        assertTrue(decoded.news.isEmpty());
+        assertFalse(decoded.hasMorePages);
+    }
+
+    @Test
+    public void writtenFileIsReadBack() throws IOException {
+        File file = new File(folder.getRoot(), "snapshot");
+        new NewsSnapshot(KEY, sampleNews(), 2, true, 42).write(file);
+
+        NewsSnapshot read = NewsSnapshot.read(file);
+        assertEquals(2, read.page);
+        assertSameNews(sampleNews(), read.news);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void missingFileIsNoSnapshot() throws IOException {
+        assertNull(NewsSnapshot.read(new File(folder.getRoot(), "missing")));
+    }
+
+    @Test
+    public void anotherMajorVersionIsIgnored() throws IOException {
+        byte[] bytes = new NewsSnapshot(KEY, sampleNews(), 1, false, 0).encode();
+        bytes[4] = 2;   // The major version follows the magic number.
+        assertNull(NewsSnapshot.decode(ByteBuffer.wrap(withCrc(bytes))));
+    }
+
+    @Test
+    public void flippedByteFailsTheChecksum() {
+        byte[] bytes = new NewsSnapshot(KEY, sampleNews(), 1, false, 0).encode();
+        bytes[bytes.length / 2] ^= 0x10;
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void truncatedSnapshotIsCorrupt() {
+        byte[] bytes = new NewsSnapshot(KEY, sampleNews(), 1, false, 0).encode();
+        assertCorrupt(withCrc(Arrays.copyOf(bytes, bytes.length / 2)));
+    }
+
+    @Test
+    public void wrongMagicIsCorrupt() {
+        byte[] bytes = new NewsSnapshot(KEY, sampleNews(), 1, false, 0).encode();
+        bytes[0] = 'X';
+        assertCorrupt(withCrc(bytes));
+    }
+
+    @Test
+    public void countLargerThanTheBytesLeftIsCorrupt() {
+        // A string table claiming Integer.MAX_VALUE strings must not be allocated.
+        Writer out = header();
+        out.writeVarint(Integer.MAX_VALUE);
+        out.writeVarint(0);
+        assertCorrupt(out.withCrc());
+    }
+
+    @Test
+    public void negativeCountIsCorrupt() {
+        Writer out = header();
+        out.writeVarint(-1);
+        assertCorrupt(out.withCrc());
+    }
+
+    @Test
+    public void stringIndexOutsideTheTableIsCorrupt() {
+        // A single string, and a news whose title is string 5.
+        Writer out = header();
+        out.writeVarint(1);
+        out.writeVarint(1);
+        out.write('a');
+        out.writeVarint(1);
+        byte[] record = {5, 0, 0, 0, 0, 0};
+        out.writeVarint(record.length);
+        out.write(record, 0, record.length);
+        assertCorrupt(out.withCrc());
+    }
+
+    /**
+     * Returns a writer with the magic number, the versions and the header of a snapshot, which is
+     * followed by the string table.
+     */
+    private static Writer header() {
+        Writer header = new Writer();
+        byte[] key = KEY.getBytes(UTF_8);
+        header.writeVarint(key.length);
+        header.write(key, 0, key.length);
+        header.writeVarint(0);
+        header.writeVarint(1);
+        header.writeVarint(0);
+
+        Writer out = new Writer();
+        out.write(new byte[]{'N', 'S', 'N', 'P', 1, 0}, 0, 6);
+        out.writeVarint(header.size());
+        out.write(header.toByteArray(), 0, header.size());
+        return out;
+    }
+
+    /**
+     * Replaces the checksum at the end of a snapshot with the one of its contents.
+     */
+    private static byte[] withCrc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 4, (int) crc.getValue());
+        return bytes;
+    }
+
+    private static void assertCorrupt(byte[] bytes) {
+        try {
+            NewsSnapshot.decode(ByteBuffer.wrap(bytes));
+            fail("A corrupt snapshot was decoded");
+        } catch (IOException expected) {
+            // The snapshot is rejected as corrupt.
+        }
+    }
+
+    /**
+     * Writer of hand-made snapshots.
+     */
+    private static class Writer extends ByteArrayOutputStream {
+        void writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        byte[] withCrc() {
+            write(new byte[4], 0, 4);
+            return NewsSnapshotTest.withCrc(toByteArray());
+        }
+    }
+}
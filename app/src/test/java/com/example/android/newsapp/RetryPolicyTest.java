@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+    // 3 attempts, delays bounded by 1, 2, 4 and then 5 seconds, "Retry-After" up to 30 seconds.
+    private final RetryPolicy policy = new RetryPolicy(3, 1000, 5000, 30000);
+
+    private static NewsFetchException failure(int code, long retryAfterMillis) {
+        return NewsFetchException.forResponse(code, retryAfterMillis);
+    }
+
+    private static NewsFetchException networkFailure() {
+        return new NewsFetchException(NewsFetchException.Kind.NETWORK, "Timeout", null);
+    }
+
+    @Test
+    public void retriesTransientFailuresOnly() {
+        assertTrue(policy.shouldRetry(networkFailure(), 1));
+        assertTrue(policy.shouldRetry(failure(503, NewsFetchException.NO_RETRY_AFTER), 1));
+        assertTrue(policy.shouldRetry(failure(429, NewsFetchException.NO_RETRY_AFTER), 1));
+        assertTrue(policy.shouldRetry(failure(408, NewsFetchException.NO_RETRY_AFTER), 1));
+        assertFalse(policy.shouldRetry(failure(400, NewsFetchException.NO_RETRY_AFTER), 1));
+        assertFalse(policy.shouldRetry(failure(404, NewsFetchException.NO_RETRY_AFTER), 1));
+        assertFalse(policy.shouldRetry(new NewsFetchException(NewsFetchException.Kind.MALFORMED_RESPONSE,
+                "Malformed", null), 1));
+    }
+
+    @Test
+    public void stopsAfterTheMaximumAttempts() {
+        assertTrue(policy.shouldRetry(networkFailure(), 2));
+        assertFalse(policy.shouldRetry(networkFailure(), 3));
+    }
+
+    @Test
+    public void doesNotWaitForALongerRetryAfter() {
+        assertTrue(policy.shouldRetry(failure(429, 30000), 1));
+        assertFalse(policy.shouldRetry(failure(429, 30001), 1));
+    }
+
+    @Test
+    public void delaysStayBelowTheExponentialBound() {
+        long[] bounds = {1000, 2000, 4000, 5000, 5000};
+        for (int attempts = 1; attempts <= bounds.length; attempts++) {
+            long longest = 0;
+            for (int i = 0; i < 500; i++) {
+                long delay = policy.delayMillis(networkFailure(), attempts);
+                assertTrue("Delay " + delay + " after attempt " + attempts, delay >= 0 && delay <= bounds[attempts - 1]);
+                longest = Math.max(longest, delay);
+            }
+
+            // The delays are spread over the whole range.
+            assertTrue(longest > bounds[attempts - 1] / 2);
+        }
+    }
+
+    @Test
+    public void delayOfManyAttemptsIsCapped() {
+        for (int attempts : new int[]{31, 32, 64, Integer.MAX_VALUE}) {
+            long delay = policy.delayMillis(networkFailure(), attempts);
+            assertTrue(delay >= 0 && delay <= 5000);
+        }
+    }
+
+    @Test
+    public void delayIsAtLeastTheRetryAfter() {
+        for (int i = 0; i < 100; i++) assertTrue(policy.delayMillis(failure(503, 12000), 1) >= 12000);
+    }
+
+    @Test
+    public void parsesRetryAfterSeconds() {
+        assertEquals(120000, RetryPolicy.parseRetryAfter("120", 0));
+        assertEquals(0, RetryPolicy.parseRetryAfter(" 0 ", 0));
+        assertEquals(NewsFetchException.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter("-5", 0));
+    }
+
+    @Test
+    public void parsesRetryAfterDates() {
+        // Wed, 21 Oct 2015 07:28:00 GMT is 1445412480000.
+        String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        assertEquals(90000, RetryPolicy.parseRetryAfter(date, 1445412480000L - 90000));
+        assertEquals(0, RetryPolicy.parseRetryAfter(date, 1445412480000L + 90000));
+    }
+
+    @Test
+    public void invalidRetryAfterIsIgnored() {
+        assertEquals(NewsFetchException.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter(null, 0));
+        assertEquals(NewsFetchException.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter("", 0));
+        assertEquals(NewsFetchException.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter("soon", 0));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import com.example.android.newsapp.stub.GuardianStub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Whole pipeline: {@link QueryUtils#fetchNewsData(String, QueryUtils.ParseMode)} against a local
+ * {@link GuardianStub}, including the HTTP request, decompression and parsing.
+ */
+@State(Scope.Benchmark)
+public class FetchBenchmark {
+    @Param({Fixtures.SIZE_10, Fixtures.SIZE_50, Fixtures.SIZE_200, Fixtures.SIZE_1000})
+    public int size;
+
+    private GuardianStub stub;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = new GuardianStub(Fixtures.searchResponse(size));
+        url = stub.searchUrl();
+    }
+
+    @TearDown
+    public void tearDown() {
+        stub.stop();
+    }
+
+    @Benchmark
+    public List<News> streaming() {
+        return QueryUtils.fetchNewsData(url, QueryUtils.ParseMode.STREAMING);
+    }
+
+    @Benchmark
+    public List<News> tree() {
+        return QueryUtils.fetchNewsData(url, QueryUtils.ParseMode.TREE);
+    }
+}
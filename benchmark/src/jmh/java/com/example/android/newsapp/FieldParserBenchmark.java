@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+/**
+ * Field stage: author and date parsing of an article, with {@link NewsFieldParser} and with the
+ * split-based code it replaced. Every operation is a single article with two authors, so the
+ * gc.alloc.rate.norm column of both gives the bytes allocated per article.
+ */
+@State(Scope.Thread)
+public class FieldParserBenchmark {
+    // Number of articles parsed by every invocation, cycling through the sample page.
+    private static final int ARTICLES = 100;
+
+    private String[] authorIds;
+    private String[] dates;
+    private NewsFieldParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[][] fields = Fixtures.sampleFields();
+        authorIds = new String[ARTICLES];
+        dates = new String[ARTICLES];
+        for (int i = 0; i < ARTICLES; i++) {
+            authorIds[i] = fields[0][i % fields[0].length];
+            dates[i] = fields[1][i % fields[1].length];
+        }
+        parser = new NewsFieldParser();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ARTICLES)
+    public void fieldParser(Blackhole blackhole) {
+        for (int i = 0; i < authorIds.length; i++) {
+            parser.beginAuthors();
+            parser.addAuthor(authorIds[i]);
+            parser.addAuthor(authorIds[authorIds.length - 1 - i]);
+            blackhole.consume(parser.endAuthors());
+            blackhole.consume(parser.parseDateTime(dates[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ARTICLES)
+    public void splitBased(Blackhole blackhole) {
+        for (int i = 0; i < authorIds.length; i++) {
+            String authors = splitParseAuthor(authorIds[i]);
+            authors = authors + ", " + splitParseAuthor(authorIds[authorIds.length - 1 - i]);
+            blackhole.consume(authors);
+            blackhole.consume(splitParseDateTime(dates[i]));
+        }
+    }
+
+    // Author parsing as it was done before NewsFieldParser, kept as the baseline.
+    private static String splitParseAuthor(String authorId) {
+        String author;
+        String[] parts = authorId.split("/");
+        author = parts[1];
+        parts = author.split("-");
+        for (int i = 0; i < parts.length; i++) {
+            if (i == 0) author = parts[i].substring(0, 1).toUpperCase() + parts[i].substring(1);
+            else
+                author = author + " " + parts[i].substring(0, 1).toUpperCase() + parts[i].substring(1);
+        }
+        return author;
+    }
+
+    // Date parsing as it was done before NewsFieldParser, kept as the baseline.
+    private static String splitParseDateTime(String webPublicationDate) {
+        String dateTime;
+        String[] parts = webPublicationDate.split("T");
+        dateTime = parts[0];
+        parts = parts[1].split("Z");
+        dateTime = dateTime + " " + parts[0];
+        return dateTime;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filtering and sorting the loaded news in memory with a {@link NewsIndex}: building the index,
+ * which happens once per list, and the queries run on every change of the filter, which must take
+ * well under a frame.
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({Fixtures.SIZE_200, Fixtures.SIZE_1000, Fixtures.SIZE_5000})
+    public int size;
+
+    private List<News> news;
+    private NewsIndex index;
+    private NewsIndex.Filter sectionFilter;
+    private NewsIndex.Filter combinedFilter;
+    private NewsIndex.Filter titleOrder;
+
+    @Setup
+    public void setUp() throws IOException {
+        news = QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(Fixtures.searchResponse(size)));
+        index = new NewsIndex(news);
+
+        sectionFilter = new NewsIndex.Filter();
+        sectionFilter.sections = Collections.singleton(index.getSections().get(0));
+
+        combinedFilter = new NewsIndex.Filter();
+        combinedFilter.sections = Collections.singleton(index.getSections().get(0));
+        combinedFilter.authors = Collections.singleton(index.getAuthors().get(0));
+        combinedFilter.fromDate = news.get(news.size() - 1).getPublishedAt();
+        combinedFilter.text = "spa";
+        combinedFilter.order = NewsIndex.Order.OLDEST;
+
+        titleOrder = new NewsIndex.Filter();
+        titleOrder.order = NewsIndex.Order.TITLE;
+    }
+
+    @Benchmark
+    public NewsIndex build() {
+        return new NewsIndex(news);
+    }
+
+    @Benchmark
+    public int[] querySection() {
+        return index.query(sectionFilter);
+    }
+
+    @Benchmark
+    public int[] queryCombined() {
+        return index.query(combinedFilter);
+    }
+
+    @Benchmark
+    public int[] sortByTitle() {
+        return index.query(titleOrder);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import com.example.android.newsapp.stub.SearchResponses;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Guardian search responses used as benchmark input: the pages recorded in the guardian-stub
+ * module for the sizes the API serves, and larger ones built from the largest recorded page,
+ * repeating its results with unique ids and URLs.
+ */
+final class Fixtures {
+    // Sizes of the responses used by every benchmark.
+    static final String SIZE_10 = "10";
+    static final String SIZE_50 = "50";
+    static final String SIZE_200 = "200";
+    static final String SIZE_1000 = "1000";
+    // Size of a long session of scrolling, for the in-memory filters.
+    static final String SIZE_5000 = "5000";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Fixtures() {
+    }
+
+    // Size of the recorded page the fields are taken from.
+    private static final int FIELDS_PAGE_SIZE = 200;
+
+    /**
+     * Returns a search response with the given number of results, recorded if there is a recorded
+     * page of that size.
+     *
+     * @param size is the number of results.
+     * @return the JSON response, encoded as UTF-8.
+     * @throws IOException if the recorded page could not be read.
+     */
+    static byte[] searchResponse(int size) throws IOException {
+        return SearchResponses.isRecorded(size) ? SearchResponses.recorded(size) : SearchResponses.synthetic(size);
+    }
+
+    /**
+     * Returns the author ids and publication dates of the largest recorded page, as they come in
+     * the JSON. Other references, and news without author, are skipped.
+     *
+     * @return an array with the author ids, followed by an array with the publication dates.
+     * @throws IOException if the recorded page could not be read.
+     */
+    static String[][] sampleFields() throws IOException {
+        JSONObject page = new JSONObject(new String(SearchResponses.recorded(FIELDS_PAGE_SIZE), UTF_8));
+        JSONArray results = page.getJSONObject("response").getJSONArray("results");
+        List<String> authorIds = new ArrayList<>();
+        String[] dates = new String[results.length()];
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            JSONArray references = result.optJSONArray("references");
+            for (int j = 0; references != null && j < references.length(); j++) {
+                JSONObject reference = references.getJSONObject(j);
+                if ("author".equals(reference.optString("type"))) authorIds.add(reference.getString("id"));
+            }
+            dates[i] = result.getString("webPublicationDate");
+        }
+        return new String[][]{authorIds.toArray(new String[authorIds.size()]), dates};
+    }
+}
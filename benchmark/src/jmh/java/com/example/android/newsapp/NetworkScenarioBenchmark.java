@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import com.example.android.newsapp.stub.GuardianStub;
+import com.example.android.newsapp.stub.GuardianStubServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Whole pipeline against a {@link GuardianStub} reproducing a degraded network: a slow mobile
+ * connection, a huge page of results, and an API failing some of the requests, which exercises
+ * the retries. Every scenario uses a fixed seed, so every run sees the same delays and errors.
+ */
+@State(Scope.Benchmark)
+public class NetworkScenarioBenchmark {
+    // Page size requested by the app.
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"slow-3g", "huge-page", "flaky"})
+    public String scenario;
+
+    private GuardianStub stub;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        GuardianStub.Builder builder = new GuardianStub.Builder();
+        GuardianStubServer.applyScenario(builder, scenario);
+        stub = builder.start();
+        url = stub.searchUrl() + "?page-size=" + PAGE_SIZE;
+
+        // Short delays between attempts, so retries don't dominate the measurements.
+        QueryUtils.setRetryPolicy(new RetryPolicy(3, 10, 40, 1000));
+    }
+
+    @TearDown
+    public void tearDown() {
+        QueryUtils.setRetryPolicy(RetryPolicy.DEFAULT);
+        stub.stop();
+    }
+
+    @Benchmark
+    public List<News> streaming() {
+        return QueryUtils.fetchNewsData(url, QueryUtils.ParseMode.STREAMING);
+    }
+}
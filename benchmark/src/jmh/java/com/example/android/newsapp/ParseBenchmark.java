@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Parse stage: turning an already downloaded response into a list of {@link News}, with the
+ * streaming parser and with the JSONObject tree parser.
+ */
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Param({Fixtures.SIZE_10, Fixtures.SIZE_50, Fixtures.SIZE_200, Fixtures.SIZE_1000})
+    public int size;
+
+    private byte[] response;
+    private String responseString;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = Fixtures.searchResponse(size);
+        responseString = new String(response, Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public List<News> streaming() throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public List<News> tree() throws IOException {
+        return QueryUtils.extractFeatureFromJson(responseString);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Restoring the list after the process has been killed: decoding a {@link NewsSnapshot}, compared
+ * with parsing the Guardian response the same news came from, and encoding the snapshot.
+ */
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({Fixtures.SIZE_10, Fixtures.SIZE_50, Fixtures.SIZE_200, Fixtures.SIZE_1000})
+    public int size;
+
+    private byte[] response;
+    private NewsSnapshot snapshot;
+    private byte[] snapshotBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = Fixtures.searchResponse(size);
+        List<News> news = QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(response));
+        snapshot = new NewsSnapshot("search", news, 1, true, System.currentTimeMillis());
+        snapshotBytes = snapshot.encode();
+    }
+
+    @Benchmark
+    public NewsSnapshot decode() throws IOException {
+        return NewsSnapshot.decode(ByteBuffer.wrap(snapshotBytes));
+    }
+
+    @Benchmark
+    public List<News> parseResponse() throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return snapshot.encode();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Host-JVM shim of the Android streaming JSON reader. Android's reader derives from Gson's, so
+ * every call is delegated to it, and Gson's syntax errors are reported as Android's.
+ */
+public final class JsonReader implements Closeable {
+    private final com.google.gson.stream.JsonReader delegate;
+
+    public JsonReader(Reader in) {
+        delegate = new com.google.gson.stream.JsonReader(in);
+    }
+
+    public void setLenient(boolean lenient) {
+        delegate.setLenient(lenient);
+    }
+
+    public void beginArray() throws IOException {
+        try {
+            delegate.beginArray();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public void endArray() throws IOException {
+        try {
+            delegate.endArray();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public void beginObject() throws IOException {
+        try {
+            delegate.beginObject();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public void endObject() throws IOException {
+        try {
+            delegate.endObject();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        try {
+            return delegate.hasNext();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public JsonToken peek() throws IOException {
+        try {
+            return JsonToken.valueOf(delegate.peek().name());
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public String nextName() throws IOException {
+        try {
+            return delegate.nextName();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public String nextString() throws IOException {
+        try {
+            return delegate.nextString();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        try {
+            return delegate.nextBoolean();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public void nextNull() throws IOException {
+        try {
+            delegate.nextNull();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public double nextDouble() throws IOException {
+        try {
+            return delegate.nextDouble();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public long nextLong() throws IOException {
+        try {
+            return delegate.nextLong();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public int nextInt() throws IOException {
+        try {
+            return delegate.nextInt();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    public void skipValue() throws IOException {
+        try {
+            delegate.skipValue();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private static MalformedJsonException malformed(com.google.gson.stream.MalformedJsonException e) {
+        MalformedJsonException malformed = new MalformedJsonException(e.getMessage());
+        malformed.initCause(e);
+        return malformed;
+    }
+}
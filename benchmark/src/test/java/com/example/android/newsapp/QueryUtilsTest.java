@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import com.example.android.newsapp.stub.SearchResponses;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the streaming parser, which needs the JSON reader of the host-JVM shims.
+ */
+public class QueryUtilsTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @After
+    public void restoreDefaults() {
+        QueryUtils.setTransport(new UrlConnectionTransport(QueryUtils.DEFAULT_CONNECT_TIMEOUT,
+                QueryUtils.DEFAULT_READ_TIMEOUT, QueryUtils.DEFAULT_MAX_CONNECTIONS));
+        QueryUtils.setRetryPolicy(RetryPolicy.DEFAULT);
+    }
+
+    private static byte[] truncatedPage() throws IOException {
+        byte[] page = SearchResponses.samplePage();
+        return Arrays.copyOf(page, page.length / 2);
+    }
+
+    private static void assertMalformed(NewsFetchException e) {
+        assertEquals(NewsFetchException.Kind.MALFORMED_RESPONSE, e.kind);
+    }
+
+    @Test
+    public void completePageIsParsed() throws IOException {
+        assertEquals(10, QueryUtils.extractFeatureFromStream(
+                new ByteArrayInputStream(SearchResponses.samplePage())).size());
+    }
+
+    @Test
+    public void truncatedNewsResponseIsMalformed() throws IOException {
+        try {
+            QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(truncatedPage()));
+            fail("A truncated response was parsed");
+        } catch (NewsFetchException e) {
+            assertMalformed(e);
+        }
+    }
+
+    @Test
+    public void invalidSyntaxIsMalformed() throws IOException {
+        try {
+            QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(
+                    "{\"response\": {\"results\": [}}}".getBytes(UTF_8)));
+            fail("An invalid response was parsed");
+        } catch (NewsFetchException e) {
+            assertMalformed(e);
+        }
+    }
+
+    @Test
+    public void truncatedBodiesResponseIsMalformed() throws IOException {
+        byte[] response = ("{\"response\": {\"results\": [{\"webUrl\": \"https://www.theguardian.com/world/1\", "
+                + "\"fields\": {\"bodyText\": \"Spain swelters").getBytes(UTF_8);
+        try {
+            QueryUtils.extractBodiesFromStream(new ByteArrayInputStream(response));
+            fail("A truncated response was parsed");
+        } catch (NewsFetchException e) {
+            assertMalformed(e);
+        }
+    }
+
+    @Test
+    public void truncatedResponseIsNotRetried() throws IOException {
+        final byte[] body = truncatedPage();
+        final AtomicInteger requests = new AtomicInteger();
+        QueryUtils.setTransport(new HttpTransport() {
+            @Override
+            public Response get(URL url, String etag, String lastModified) {
+                requests.incrementAndGet();
+                return new Response(200, new ByteArrayInputStream(body), null, null, null) {
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        });
+        QueryUtils.setRetryPolicy(new RetryPolicy(3, 1, 1, 1));
+
+        try {
+            QueryUtils.fetchNewsResponse("http://localhost/search?q=truncated", QueryUtils.ParseMode.STREAMING,
+                    null, null);
+            fail("A truncated response was parsed");
+        } catch (NewsFetchException e) {
+            assertMalformed(e);
+        }
+        assertEquals(1, requests.get());
+    }
+}
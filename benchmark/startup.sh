@@ -0,0 +1,95 @@
+#!/bin/bash
+#
+# Measures the cold start of the app on the connected device or emulator. Every run kills the app,
+# launches NewsActivity, and reads:
+#
+#   * Time to first draw: "TotalTime" of "am start -W", until the first frame of the activity.
+#   * Time to full content: the "Fully drawn" time logged by the system when the activity calls
+#     reportFullyDrawn(), once the first complete list of news has been shown.
+#
+# Install the minified build first, and point it to a guardian-stub server for content that is the
+# same on every run:
+#
+#     ./gradlew :guardian-stub:run -PstubArgs="--port=8080" &
+#     ./gradlew :app:installBenchmark -PguardianBaseUrl=http://10.0.2.2:8080
+#     benchmark/startup.sh --runs=20 --compile=speed-profile
+#
+# Options:
+#   --runs=N             number of measured launches (default 10), after a discarded first one.
+#   --compile=FILTER     compiles the app with the given dex2oat filter before measuring, e.g.
+#                        "speed-profile" for the code profiled during the previous launches, or
+#                        "quicken" for none (Android 7.0 and later).
+#   --clear-data         clears the data of the app before every launch, so there's no cached
+#                        list of news to show.
+
+PACKAGE=com.example.android.newsapp
+ACTIVITY=$PACKAGE/.NewsActivity
+RUNS=10
+COMPILE=
+CLEAR_DATA=false
+FULLY_DRAWN_TIMEOUT=30
+
+for arg in "$@"; do
+    case $arg in
+        --runs=*) RUNS=${arg#*=} ;;
+        --compile=*) COMPILE=${arg#*=} ;;
+        --clear-data) CLEAR_DATA=true ;;
+        *) echo "Unknown option: $arg" >&2; exit 1 ;;
+    esac
+done
+
+if [ -n "$COMPILE" ]; then
+    echo "Compiling $PACKAGE with $COMPILE..."
+    adb shell cmd package compile -m "$COMPILE" -f $PACKAGE > /dev/null || exit 1
+fi
+
+# Converts a "Fully drawn" time such as "+1s234ms" to milliseconds.
+to_millis() {
+    echo "$1" | sed -e 's/^+//' | awk '{
+        total = 0
+        if (match($0, /[0-9]+s/)) total += substr($0, RSTART, RLENGTH - 1) * 1000
+        if (match($0, /[0-9]+ms/)) total += substr($0, RSTART, RLENGTH - 2)
+        print total
+    }'
+}
+
+# Launches the activity from scratch, and prints the time to first draw and to full content.
+launch() {
+    adb shell am force-stop $PACKAGE
+    if [ "$CLEAR_DATA" = true ]; then adb shell pm clear $PACKAGE > /dev/null; fi
+    adb logcat -c
+    local first_draw
+    first_draw=$(adb shell am start -W -n $ACTIVITY | tr -d '\r' | awk -F': ' '/^TotalTime/ {print $2}')
+    local fully_drawn=
+    local second=0
+    while [ -z "$fully_drawn" ] && [ $second -lt $FULLY_DRAWN_TIMEOUT ]; do
+        sleep 1
+        second=$((second + 1))
+        fully_drawn=$(adb logcat -d -s ActivityManager:I | tr -d '\r' \
+                | sed -n "s|.*Fully drawn $ACTIVITY: \(+[0-9sm]*\).*|\1|p" | head -n 1)
+    done
+    echo "$first_draw $(to_millis "${fully_drawn:-+0ms}")"
+}
+
+# Prints the median, 90th percentile and maximum of a column of numbers.
+summarize() {
+    sort -n | awk '{ values[NR] = $1 } END {
+        printf "median %d ms, p90 %d ms, max %d ms\n",
+                values[int((NR + 1) / 2)], values[int((NR * 9 + 9) / 10)], values[NR]
+    }'
+}
+
+# The first launch after installing or compiling is not representative.
+launch > /dev/null
+
+RESULTS=$(mktemp)
+for ((run = 1; run <= RUNS; run++)); do
+    result=$(launch)
+    echo "Run $run: first draw ${result% *} ms, full content ${result#* } ms"
+    echo "$result" >> "$RESULTS"
+done
+
+echo
+echo "Time to first draw:   $(cut -d' ' -f1 "$RESULTS" | summarize)"
+echo "Time to full content: $(cut -d' ' -f2 "$RESULTS" | summarize)"
+rm -f "$RESULTS"
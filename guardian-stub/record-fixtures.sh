@@ -0,0 +1,22 @@
+#!/bin/bash
+#
+# Records the first pages of 10, 50 and 200 results of the Guardian content API, as served, into
+# the fixtures of the stub, which are also the input of the benchmarks. The pages are requested
+# with the thumbnails and author references the app shows, but without filtering by reference
+# type, so they include news without thumbnail, without author and with many authors:
+#
+#     guardian-stub/record-fixtures.sh [API_KEY]
+#
+# The API key defaults to "test", the developer key of the API.
+
+API_KEY=${1:-test}
+FIXTURES=$(dirname "$0")/src/main/resources/fixtures
+BASE_URL=https://content.guardianapis.com/search
+
+for size in 10 50 200; do
+    echo "Recording $FIXTURES/search-$size.json..."
+    curl --fail --silent --show-error --compressed -o "$FIXTURES/search-$size.json.tmp" \
+            "$BASE_URL?api-key=$API_KEY&order-by=newest&page=1&page-size=$size&show-fields=thumbnail&show-references=author" \
+            || { rm -f "$FIXTURES/search-$size.json.tmp"; exit 1; }
+    mv "$FIXTURES/search-$size.json.tmp" "$FIXTURES/search-$size.json"
+done
@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server standing in for the search endpoint of the Guardian content API, so the
+ * network behaviour of the app can be measured and reproduced without depending on
+ * content.guardianapis.com.
+ * <p>
+ * Every request to /search is answered with a recorded payload or with a synthetic page of
+ * results whose size follows the "page-size" and "page" parameters. Responses can be delayed,
+ * throttled to a given bandwidth and replaced by injected errors. Randomness (latency jitter and
+ * errors) comes from a seeded generator, so a run with the same settings and the same sequence of
+ * requests always behaves the same.
+ */
+public final class GuardianStub implements HttpHandler {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Size of the chunks written when the bandwidth is throttled.
+    private static final int THROTTLE_CHUNK_BYTES = 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Builder settings;
+    private final Random random;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    // Plain and gzip compressed bodies of the synthetic pages already built, by size and page.
+    private final Map<String, byte[][]> bodies = new ConcurrentHashMap<>();
+
+    /**
+     * Settings of a {@link GuardianStub}. By default, the server answers at once, at full speed
+     * and without errors, on a free port of the loopback interface.
+     */
+    public static class Builder {
+        private String host = "127.0.0.1";
+        private int port;
+        private byte[] payload;
+        private int results;
+        private int extraBytesPerResult;
+        private long latencyMillis;
+        private long jitterMillis;
+        private long bytesPerSecond;
+        private double errorRate;
+        private int errorCode = 503;
+        private long retryAfterSeconds = -1;
+        private long seed = 1;
+
+        /**
+         * Sets the address the server listens on, e.g. "0.0.0.0" for being reachable from an
+         * emulator or a device.
+         */
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Sets the port the server listens on, or 0 for any free port.
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Serves the given response, e.g. a recorded one, for every request, whatever its
+         * parameters.
+         */
+        public Builder payload(byte[] payload) {
+            this.payload = payload;
+            return this;
+        }
+
+        /**
+         * Sets the number of results of every synthetic page, or 0 for following the "page-size"
+         * parameter of the request.
+         */
+        public Builder results(int results) {
+            this.results = results;
+            return this;
+        }
+
+        /**
+         * Adds a "bodyText" field of the given size to every synthetic result, for building large
+         * payloads.
+         */
+        public Builder extraBytesPerResult(int extraBytesPerResult) {
+            this.extraBytesPerResult = extraBytesPerResult;
+            return this;
+        }
+
+        /**
+         * Delays every response by the given latency, plus a random jitter between 0 and the given
+         * one, before sending its headers.
+         */
+        public Builder latency(long latencyMillis, long jitterMillis) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+            return this;
+        }
+
+        /**
+         * Limits the speed every body is sent at, or 0 for no limit.
+         */
+        public Builder bytesPerSecond(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Answers the given fraction of the requests, from 0 to 1, with the given HTTP error, and
+         * with a "Retry-After" header if the given seconds are not negative.
+         */
+        public Builder errors(double errorRate, int errorCode, long retryAfterSeconds) {
+            this.errorRate = errorRate;
+            this.errorCode = errorCode;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the latency jitter and of the injected errors.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Starts a server with these settings.
+         *
+         * @return the running {@link GuardianStub}.
+         * @throws IOException if the server could not be started.
+         */
+        public GuardianStub start() throws IOException {
+            return new GuardianStub(this);
+        }
+    }
+
+    /**
+     * Starts a server on a free local port, answering every request with the given response at
+     * full speed.
+     *
+     * @param body is the response served for every request.
+     * @throws IOException if the server could not be started.
+     */
+    public GuardianStub(byte[] body) throws IOException {
+        this(new Builder().payload(body));
+    }
+
+    private GuardianStub(Builder settings) throws IOException {
+        this.settings = settings;
+        this.random = new Random(settings.seed);
+        if (settings.payload != null) bodies.put("payload", compress(settings.payload));
+
+        // Requests are handled concurrently, so the latency of a request doesn't delay others.
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(settings.host, settings.port), 0);
+        server.createContext("/", this);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the base URL of the server, to be used instead of http://content.guardianapis.com.
+     */
+    public String baseUrl() {
+        return "http://" + settings.host + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the URL of the search endpoint of the server.
+     */
+    public String searchUrl() {
+        return baseUrl() + "/search";
+    }
+
+    /**
+     * Returns the number of requests received so far.
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Stops the server, closing every connection.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            if (!exchange.getRequestURI().getPath().equals("/search")) {
+                send(exchange, 404, errorBody("Not found"), false);
+                return;
+            }
+
+            long delay = settings.latencyMillis;
+            if (settings.jitterMillis > 0) delay += (long) (random.nextDouble() * settings.jitterMillis);
+            if (delay > 0) Thread.sleep(delay);
+
+            if (settings.errorRate > 0 && random.nextDouble() < settings.errorRate) {
+                if (settings.retryAfterSeconds >= 0)
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.retryAfterSeconds));
+                send(exchange, settings.errorCode, errorBody("Injected error"), false);
+                return;
+            }
+
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            byte[][] body = bodyFor(parseQuery(exchange.getRequestURI().getRawQuery()));
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, 200, gzip ? body[1] : body[0], settings.bytesPerSecond > 0);
+        } catch (InterruptedException e) {
+            // The server is being stopped.
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the plain and compressed body for a request, building it the first time.
+     *
+     * @param parameters are the parameters of the request.
+     * @return the plain body, followed by the gzip compressed one.
+     * @throws IOException if the sample page could not be read.
+     */
+    private byte[][] bodyFor(Map<String, String> parameters) throws IOException {
+        if (settings.payload != null) return bodies.get("payload");
+        int size = settings.results > 0 ? settings.results : parseInt(parameters.get("page-size"), 10);
+        int page = parseInt(parameters.get("page"), 1);
+        String key = size + "/" + page;
+        byte[][] body = bodies.get(key);
+        if (body == null) {
+            body = compress(SearchResponses.synthetic(size, page, settings.extraBytesPerResult));
+            bodies.put(key, body);
+        }
+        return body;
+    }
+
+    /**
+     * Sends a response, at the throttled speed if required.
+     *
+     * @param exchange  is the request being answered.
+     * @param code      is the HTTP status code.
+     * @param body      is the body of the response.
+     * @param throttled is whether the body is sent at the limited speed.
+     * @throws IOException          if the response could not be sent.
+     * @throws InterruptedException if the server is being stopped.
+     */
+    private void send(HttpExchange exchange, int code, byte[] body, boolean throttled)
+            throws IOException, InterruptedException {
+        exchange.sendResponseHeaders(code, body.length);
+        OutputStream out = exchange.getResponseBody();
+        if (!throttled) {
+            out.write(body);
+            return;
+        }
+
+        // Every chunk is sent at the time it would have been received at the limited speed.
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += THROTTLE_CHUNK_BYTES) {
+            int length = Math.min(THROTTLE_CHUNK_BYTES, body.length - offset);
+            long dueNanos = (offset + length) * 1000000000L / settings.bytesPerSecond;
+            long waitMillis = (dueNanos - (System.nanoTime() - start)) / 1000000;
+            if (waitMillis > 0) Thread.sleep(waitMillis);
+            out.write(body, offset, length);
+            out.flush();
+        }
+    }
+
+    private static byte[] errorBody(String message) {
+        return ("{\"response\":{\"status\":\"error\",\"message\":\"" + message + "\"}}").getBytes(UTF_8);
+    }
+
+    private static byte[][] compress(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(body);
+        gzip.close();
+        return new byte[][]{body, compressed.toByteArray()};
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value != null ? Math.max(1, Integer.parseInt(value)) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
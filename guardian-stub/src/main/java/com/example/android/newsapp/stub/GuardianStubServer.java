@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Command line entry point of the {@link GuardianStub}. Arguments are given as "--name=value":
+ * <p>
+ * * --port: port to listen on (8080).
+ * * --host: address to listen on (0.0.0.0, so emulators and devices can reach it).
+ * * --scenario: preset settings, applied before the other arguments: "slow-3g", "huge-page",
+ * "flaky" or "rate-limited".
+ * * --payload: file with a recorded response, served for every request.
+ * * --results: number of results of every synthetic page (the "page-size" of the request).
+ * * --extra-bytes: size of the "bodyText" field of every synthetic result (0).
+ * * --latency-ms, --jitter-ms: delay of every response (0, 0).
+ * * --bytes-per-second: bandwidth limit (no limit).
+ * * --error-rate, --error-code, --retry-after: fraction of the requests answered with an error
+ * (0), its HTTP status code (503) and its "Retry-After" in seconds (none).
+ * * --seed: seed of the latency jitter and of the injected errors (1).
+ */
+public final class GuardianStubServer {
+    private GuardianStubServer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        GuardianStub.Builder builder = new GuardianStub.Builder().host("0.0.0.0").port(8080);
+        for (String arg : args) {
+            if (arg.startsWith("--scenario=")) applyScenario(builder, value(arg));
+        }
+
+        long latency = 0;
+        long jitter = 0;
+        double errorRate = 0;
+        int errorCode = 503;
+        long retryAfter = -1;
+        boolean errorsGiven = false;
+        boolean latencyGiven = false;
+        for (String arg : args) {
+            String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+            switch (name) {
+                case "--scenario":
+                    break;
+                case "--port":
+                    builder.port(Integer.parseInt(value(arg)));
+                    break;
+                case "--host":
+                    builder.host(value(arg));
+                    break;
+                case "--payload":
+                    builder.payload(readFile(new File(value(arg))));
+                    break;
+                case "--results":
+                    builder.results(Integer.parseInt(value(arg)));
+                    break;
+                case "--extra-bytes":
+                    builder.extraBytesPerResult(Integer.parseInt(value(arg)));
+                    break;
+                case "--latency-ms":
+                    latency = Long.parseLong(value(arg));
+                    latencyGiven = true;
+                    break;
+                case "--jitter-ms":
+                    jitter = Long.parseLong(value(arg));
+                    latencyGiven = true;
+                    break;
+                case "--bytes-per-second":
+                    builder.bytesPerSecond(Long.parseLong(value(arg)));
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(value(arg));
+                    errorsGiven = true;
+                    break;
+                case "--error-code":
+                    errorCode = Integer.parseInt(value(arg));
+                    errorsGiven = true;
+                    break;
+                case "--retry-after":
+                    retryAfter = Long.parseLong(value(arg));
+                    errorsGiven = true;
+                    break;
+                case "--seed":
+                    builder.seed(Long.parseLong(value(arg)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        if (latencyGiven) builder.latency(latency, jitter);
+        if (errorsGiven) builder.errors(errorRate, errorCode, retryAfter);
+
+        GuardianStub stub = builder.start();
+        System.out.println("Guardian stub listening at " + stub.searchUrl());
+    }
+
+    /**
+     * Applies the settings of a named scenario.
+     *
+     * @param builder  is the builder of the server.
+     * @param scenario is the name of the scenario.
+     */
+    public static void applyScenario(GuardianStub.Builder builder, String scenario) {
+        switch (scenario) {
+            case "slow-3g":
+                // Typical of a poor mobile connection: high latency and 400 kbit/s.
+                builder.latency(400, 200).bytesPerSecond(50 * 1024);
+                break;
+            case "huge-page":
+                // 1000 results of about 2 KB each, whatever the page size requested.
+                builder.results(1000).extraBytesPerResult(2048);
+                break;
+            case "flaky":
+                // A fifth of the requests fail with a server error.
+                builder.errors(0.2, 503, -1);
+                break;
+            case "rate-limited":
+                // Half of the requests are rejected, as the "test" key is when overused.
+                builder.errors(0.5, 429, 2);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    private static String value(String arg) {
+        int equals = arg.indexOf('=');
+        if (equals < 0) throw new IllegalArgumentException("Missing value for " + arg);
+        return arg.substring(equals + 1);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] content = new byte[(int) in.length()];
+            in.readFully(content);
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+}
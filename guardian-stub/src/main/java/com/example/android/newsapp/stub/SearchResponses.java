@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp.stub;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Search responses of the Guardian content API: the recorded first pages of 10, 50 and 200
+ * results in fixtures/search-SIZE.json, and synthetic pages of any size built from the largest
+ * one. The recorded pages come with thumbnails and author references, as the app requests them,
+ * so they include news without thumbnail, without author and with many authors.
+ */
+public final class SearchResponses {
+    // Sizes of the recorded pages. The API doesn't serve pages of more than 200 results.
+    private static final int[] RECORDED_SIZES = {10, 50, 200};
+    private static final int LARGEST_RECORDED_SIZE = 200;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private SearchResponses() {
+    }
+
+    /**
+     * Returns the recorded sample page, with 10 results.
+     *
+     * @return the JSON response, encoded as UTF-8.
+     * @throws IOException if the sample page could not be read.
+     */
+    public static byte[] samplePage() throws IOException {
+        return recorded(10);
+    }
+
+    /**
+     * Checks whether there is a recorded page with the given number of results.
+     *
+     * @param size is the number of results.
+     * @return true if {@link #recorded(int)} returns a page of that size.
+     */
+    public static boolean isRecorded(int size) {
+        for (int recordedSize : RECORDED_SIZES) {
+            if (recordedSize == size) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the recorded first page with the given number of results.
+     *
+     * @param size is the number of results: 10, 50 or 200.
+     * @return the JSON response, encoded as UTF-8.
+     * @throws IOException if there is no recorded page of that size, or it could not be read.
+     */
+    public static byte[] recorded(int size) throws IOException {
+        String fixture = "/fixtures/search-" + size + ".json";
+        InputStream in = SearchResponses.class.getResourceAsStream(fixture);
+        if (in == null) throw new IOException("Missing fixture " + fixture);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) out.write(buffer, 0, count);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the first page of a search response with the given number of results.
+     *
+     * @param size is the number of results.
+     * @return the JSON response, encoded as UTF-8.
+     * @throws IOException if the recorded page could not be read.
+     */
+    public static byte[] synthetic(int size) throws IOException {
+        return synthetic(size, 1, 0);
+    }
+
+    /**
+     * Returns a page of a search response, repeating the results of the largest recorded page
+     * with unique ids and URLs. Every page has different results, and there are always more pages.
+     *
+     * @param size                is the number of results of the page.
+     * @param page                is the page, starting from 1.
+     * @param extraBytesPerResult is the size of the "bodyText" field added to every result, for
+     *                            building large payloads, or 0 for no field at all.
+     * @return the JSON response, encoded as UTF-8.
+     * @throws IOException if the recorded page could not be read.
+     */
+    public static byte[] synthetic(int size, int page, int extraBytesPerResult) throws IOException {
+        JSONObject samplePage = new JSONObject(new String(recorded(LARGEST_RECORDED_SIZE), UTF_8));
+        JSONObject response = samplePage.getJSONObject("response");
+        JSONArray sample = response.getJSONArray("results");
+
+        String bodyText = null;
+        if (extraBytesPerResult > 0) {
+            char[] text = new char[extraBytesPerResult];
+            Arrays.fill(text, 'x');
+            bodyText = new String(text);
+        }
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            int index = (page - 1) * size + i;
+            JSONObject result = new JSONObject(sample.getJSONObject(index % sample.length()).toString());
+            String suffix = "-" + (index / sample.length());
+            result.put("id", result.getString("id") + suffix);
+            result.put("webUrl", result.getString("webUrl") + suffix);
+            result.put("apiUrl", result.getString("apiUrl") + suffix);
+            if (bodyText != null) result.put("fields", new JSONObject().put("bodyText", bodyText));
+            results.put(result);
+        }
+        response.put("pageSize", size);
+        response.put("currentPage", page);
+        response.put("startIndex", (page - 1) * size + 1);
+        response.put("results", results);
+        return samplePage.toString().getBytes(UTF_8);
+    }
+}